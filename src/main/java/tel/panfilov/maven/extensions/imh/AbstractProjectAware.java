@@ -1,56 +1,162 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
 package tel.panfilov.maven.extensions.imh;
 
 import org.apache.maven.project.MavenProject;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.metadata.Metadata;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.function.Supplier;
 
 public abstract class AbstractProjectAware {
 
-    protected final Map<String, MavenProject> projectMap = new HashMap<>();
+    protected volatile CoordinateIndex<ReactorModule> projects = new CoordinateIndex<>();
+
+    private String rootFingerprint;
+
+    private CoordinateIndex<ReactorModule> rootProjects = new CoordinateIndex<>();
 
-    public void setRootProject(MavenProject project) {
-        projectMap.put(getProjectId(project), project);
-        List<MavenProject> collected = project.getCollectedProjects();
-        if (collected != null) {
-            collected.forEach(this::addProject);
+    private volatile LazyRoot lazyRoot;
+
+    private boolean discovering;
+
+    public void setRootProject(ReactorSnapshot reactor) {
+        synchronized (this) {
+            String fingerprint = reactor.getFingerprint();
+            if (fingerprint == null || !fingerprint.equals(rootFingerprint)) {
+                CoordinateIndex<ReactorModule> index = new CoordinateIndex<>();
+                index.putAll(reactor.getModules(), ReactorModule::getCoordinates);
+                rootProjects = index;
+                rootFingerprint = fingerprint;
+            }
+            if (projects.size() == 0) {
+                projects = rootProjects.copy();
+            } else {
+                // modules registered from session (e.g. root project discovered lazily) carry attached artifacts
+                for (ReactorModule module : rootProjects.values()) {
+                    projects.putIfAbsent(module, ReactorModule::getCoordinates);
+                }
+            }
         }
     }
 
-    public void addProject(MavenProject project) {
-        projectMap.put(getProjectId(project), project);
+    /**
+     * Defers root project discovery till the first lookup of coordinates which might belong to root reactor
+     *
+     * @param supplier   discovers root reactor, may return null
+     * @param candidates groupIds and artifactIds of root reactor modules, null if unknown
+     */
+    public void setRootProject(Supplier<ReactorSnapshot> supplier, CoordinateFilter candidates) {
+        lazyRoot = new LazyRoot(supplier, candidates);
     }
 
-    public boolean isReactorArtifact(Artifact artifact) {
-        return projectMap.containsKey(getProjectId(artifact));
+    protected void discoverRootProject(String groupId, String artifactId) {
+        LazyRoot lazy = lazyRoot;
+        if (lazy == null || lazy.candidates != null && !lazy.candidates.mightContain(groupId, artifactId)) {
+            return;
+        }
+        synchronized (this) {
+            // building root project may look up artifacts in turn
+            if (lazyRoot != lazy || discovering) {
+                return;
+            }
+            discovering = true;
+            try {
+                ReactorSnapshot root = lazy.supplier.get();
+                if (root != null) {
+                    setRootProject(root);
+                }
+            } finally {
+                discovering = false;
+                lazyRoot = null;
+            }
+        }
     }
 
-    public MavenProject getProject(Artifact artifact) {
-        return projectMap.get(getProjectId(artifact));
+    /**
+     * Drops projects of the current session, supposed to be called when session starts and ends,
+     * since the component outlives sessions in long-lived JVMs
+     *
+     * @param retainRoot whether to keep index of root reactor, so it gets reused once the same root
+     *                   project is set again
+     */
+    public void reset(boolean retainRoot) {
+        synchronized (this) {
+            projects = new CoordinateIndex<>();
+            lazyRoot = null;
+            if (!retainRoot) {
+                rootFingerprint = null;
+                rootProjects = new CoordinateIndex<>();
+            }
+        }
     }
 
-    protected boolean isReactorArtifact(Metadata metadata) {
-        return projectMap.containsKey(getProjectId(metadata));
+    public void addProject(MavenProject project) {
+        addModule(ReactorModule.of(project));
     }
 
+    /**
+     * Adds module of the current session, replacing descriptor captured earlier
+     *
+     * @param module module descriptor
+     * @return descriptor replaced by the new one, null if module was not known
+     */
+    protected ReactorModule addModule(ReactorModule module) {
+        synchronized (this) {
+            return projects.put(module, ReactorModule::getCoordinates);
+        }
+    }
+
+    public boolean isReactorArtifact(Artifact artifact) {
+        return getModule(artifact) != null;
+    }
 
-    protected String getProjectId(MavenProject project) {
-        return project.getGroupId() + ':' + project.getArtifactId() + ':' + project.getVersion();
+    public ReactorModule getModule(Artifact artifact) {
+        return getModule(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion());
     }
 
-    protected String getProjectId(Artifact artifact) {
-        return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getVersion();
+    protected boolean isReactorArtifact(Metadata metadata) {
+        return getModule(metadata.getGroupId(), metadata.getArtifactId(), metadata.getVersion()) != null;
     }
 
-    protected String getProjectId(Metadata metadata) {
-        return metadata.getGroupId() + ':' + metadata.getArtifactId() + ':' + metadata.getVersion();
+    protected ReactorModule getModule(String groupId, String artifactId, String version) {
+        ReactorModule module = projects.get(groupId, artifactId, version);
+        if (module == null && lazyRoot != null) {
+            discoverRootProject(groupId, artifactId);
+            module = projects.get(groupId, artifactId, version);
+        }
+        return module;
     }
 
-    protected String getArtifactId(Artifact artifact) {
-        return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getExtension() + ':' + artifact.getClassifier();
+    static final class LazyRoot {
+
+        private final Supplier<ReactorSnapshot> supplier;
+
+        private final CoordinateFilter candidates;
+
+        LazyRoot(Supplier<ReactorSnapshot> supplier, CoordinateFilter candidates) {
+            this.supplier = supplier;
+            this.candidates = candidates;
+        }
+
     }
 
 }
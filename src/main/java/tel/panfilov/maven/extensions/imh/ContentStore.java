@@ -0,0 +1,174 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+
+/**
+ * Content addressed store of artifact files shared between overlay repositories of several checkouts.
+ * <p>
+ * Files are stored once under their digest, overlay repository refers to them via hard links
+ * and keeps index of overlay paths to digests.
+ */
+public class ContentStore {
+
+    public static final String INDEX_FILE = ".imh-store.properties";
+
+    private final Path root;
+
+    private final Path indexFile;
+
+    private final Properties index = new Properties();
+
+    private boolean dirty;
+
+    public ContentStore(Path root, Path overlay) {
+        this.root = root;
+        this.indexFile = overlay.resolve(INDEX_FILE);
+        if (Files.isRegularFile(indexFile)) {
+            try (InputStream input = Files.newInputStream(indexFile)) {
+                index.load(input);
+            } catch (IOException ex) {
+                index.clear();
+            }
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Places file into overlay repository as hard link to the stored copy of its content. Content is hashed
+     * and stored without holding the store monitor, installs of the same target are supposed to be
+     * serialized by the caller
+     *
+     * @param source   file being installed
+     * @param target   target file in overlay repository
+     * @param relative path of target file relative to overlay repository
+     * @throws IOException if file can't be stored or linked
+     */
+    public void install(Path source, Path target, String relative) throws IOException {
+        String digest = DigestManifest.digest(source);
+        Path object = root.resolve(digest.substring(0, 2)).resolve(digest.substring(2));
+        if (!Files.exists(object)) {
+            store(source, object);
+        }
+
+        synchronized (this) {
+            if (digest.equals(index.getProperty(relative)) && Files.exists(target) && Files.isSameFile(object, target)) {
+                setLastModifiedTime(target, source);
+                return;
+            }
+
+            if (!Files.exists(object)) {
+                // removed concurrently
+                store(source, object);
+            }
+
+            Files.createDirectories(target.getParent());
+            Path temp = target.resolveSibling(target.getFileName() + ".imh-" + Long.toHexString(System.nanoTime()));
+            try {
+                Files.createLink(temp, object);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException ex) {
+                Files.deleteIfExists(temp);
+                throw ex;
+            }
+            setLastModifiedTime(target, source);
+            index.setProperty(relative, digest);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forgets the given overlay path, e.g. when it has been removed from overlay repository,
+     * stored copy is removed once nothing links to it
+     *
+     * @param relative path relative to overlay repository
+     */
+    public synchronized void remove(String relative) {
+        Object digest = index.remove(relative);
+        if (digest == null) {
+            return;
+        }
+        dirty = true;
+        String value = digest.toString();
+        Path object = root.resolve(value.substring(0, 2)).resolve(value.substring(2));
+        try {
+            Object links = Files.getAttribute(object, "unix:nlink");
+            if (links instanceof Integer && (Integer) links == 1) {
+                Files.delete(object);
+            }
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException | SecurityException ex) {
+            // keep stored copy
+        }
+    }
+
+    protected void store(Path source, Path object) throws IOException {
+        Files.createDirectories(object.getParent());
+        // concurrent stores of the same content use distinct temporary files
+        Path temp = object.resolveSibling(object.getFileName() + ".imh-" + Long.toHexString(System.nanoTime())
+                + "-" + Long.toHexString(Thread.currentThread().getId()));
+        try {
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                Files.copy(source, output);
+            }
+            Files.move(temp, object, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException ex) {
+            // the same content has been stored concurrently
+            Files.deleteIfExists(temp);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+    }
+
+    protected void setLastModifiedTime(Path target, Path source) throws IOException {
+        // installer skips copying when modification time and size match
+        FileTime time = Files.getLastModifiedTime(source);
+        if (!time.equals(Files.getLastModifiedTime(target))) {
+            Files.setLastModifiedTime(target, time);
+        }
+    }
+
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        Files.createDirectories(indexFile.getParent());
+        Path temp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temp)) {
+            index.store(output, "IMH overlay path to content digest index");
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Bloom filter over (groupId, artifactId) pairs of reactor modules, allows to reject
+ * coordinates of third-party artifacts without probing reactor index
+ */
+public final class CoordinateFilter {
+
+    private static final int HASHES = 3;
+
+    private static final int BITS_PER_ENTRY = 16;
+
+    private final long[] bits;
+
+    private final int mask;
+
+    private CoordinateFilter(int size) {
+        this.bits = new long[Math.max(1, size >>> 6)];
+        this.mask = size - 1;
+    }
+
+    public static CoordinateFilter of(Collection<String[]> coordinates) {
+        int size = Integer.highestOneBit(Math.max(64, coordinates.size() * BITS_PER_ENTRY - 1)) << 1;
+        CoordinateFilter filter = new CoordinateFilter(size);
+        for (String[] coordinate : coordinates) {
+            filter.add(coordinate[0], coordinate[1]);
+        }
+        return filter;
+    }
+
+    private void add(String groupId, String artifactId) {
+        int h1 = hash(groupId, artifactId);
+        int h2 = mix(h1);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String groupId, String artifactId) {
+        int h1 = hash(groupId, artifactId);
+        int h2 = mix(h1);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String groupId, String artifactId) {
+        return 31 * Objects.hashCode(groupId) + Objects.hashCode(artifactId);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h | 1;
+    }
+
+}
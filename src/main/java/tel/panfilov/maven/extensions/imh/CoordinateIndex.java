@@ -0,0 +1,221 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Open addressing hash table keyed by (groupId, artifactId, version).
+ * <p>
+ * Lookups neither allocate nor lock, so the index may be probed concurrently with modifications,
+ * modifications are supposed to be serialized by the owner. Entries are immutable and get published
+ * via atomic slot writes, replacing value of existing coordinates and adding new ones costs
+ * amortized O(1), the table grows once it gets half full.
+ *
+ * @param <T> type of values
+ */
+public final class CoordinateIndex<T> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile AtomicReferenceArray<Entry<T>> entries;
+
+    private volatile int size;
+
+    public CoordinateIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    private CoordinateIndex(int capacity) {
+        this.entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(String groupId, String artifactId, String version) {
+        return get(groupId, artifactId, version) != null;
+    }
+
+    public T get(String groupId, String artifactId, String version) {
+        AtomicReferenceArray<Entry<T>> table = entries;
+        int mask = table.length() - 1;
+        int index = hash(groupId, artifactId, version) & mask;
+        Entry<T> entry;
+        while ((entry = table.get(index)) != null) {
+            if (entry.matches(groupId, artifactId, version)) {
+                return entry.value;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    public List<T> values() {
+        AtomicReferenceArray<Entry<T>> table = entries;
+        List<T> result = new ArrayList<>(size);
+        for (int i = 0; i < table.length(); i++) {
+            Entry<T> entry = table.get(i);
+            if (entry != null) {
+                result.add(entry.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds value, replacing the one with the same coordinates
+     *
+     * @param value       value to add
+     * @param coordinates function extracting groupId, artifactId and version from value
+     * @return replaced value, null if there was no value with the same coordinates
+     */
+    public T put(T value, Function<? super T, String[]> coordinates) {
+        return put(value, coordinates, true);
+    }
+
+    /**
+     * Adds value unless there is a value with the same coordinates
+     *
+     * @param value       value to add
+     * @param coordinates function extracting groupId, artifactId and version from value
+     * @return existing value, null if the value has been added
+     */
+    public T putIfAbsent(T value, Function<? super T, String[]> coordinates) {
+        return put(value, coordinates, false);
+    }
+
+    /**
+     * Adds values, values with the same coordinates replace existing ones
+     *
+     * @param added       values to add
+     * @param coordinates function extracting groupId, artifactId and version from value
+     */
+    public void putAll(Collection<? extends T> added, Function<? super T, String[]> coordinates) {
+        for (T value : added) {
+            put(value, coordinates, true);
+        }
+    }
+
+    /**
+     * @return independent index containing the same entries
+     */
+    public CoordinateIndex<T> copy() {
+        AtomicReferenceArray<Entry<T>> table = entries;
+        CoordinateIndex<T> result = new CoordinateIndex<>(table.length());
+        for (int i = 0; i < table.length(); i++) {
+            result.entries.set(i, table.get(i));
+        }
+        result.size = size;
+        return result;
+    }
+
+    private T put(T value, Function<? super T, String[]> coordinates, boolean replace) {
+        String[] gav = coordinates.apply(value);
+        Entry<T> added = new Entry<>(gav[0], gav[1], gav[2], value);
+        AtomicReferenceArray<Entry<T>> table = entries;
+        int index = find(table, added);
+        Entry<T> existing = table.get(index);
+        if (existing != null) {
+            if (replace) {
+                table.set(index, added);
+            }
+            return existing.value;
+        }
+        if ((size + 1) * 2 > table.length()) {
+            table = resize(table, table.length() << 1);
+            index = find(table, added);
+        }
+        table.set(index, added);
+        if (table != entries) {
+            entries = table;
+        }
+        size++;
+        return null;
+    }
+
+    private static <T> AtomicReferenceArray<Entry<T>> resize(AtomicReferenceArray<Entry<T>> table, int capacity) {
+        // readers keep probing the old table until the new one is published
+        AtomicReferenceArray<Entry<T>> result = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < table.length(); i++) {
+            Entry<T> entry = table.get(i);
+            if (entry != null) {
+                result.set(find(result, entry), entry);
+            }
+        }
+        return result;
+    }
+
+    private static <T> int find(AtomicReferenceArray<Entry<T>> table, Entry<T> target) {
+        int mask = table.length() - 1;
+        int index = target.hash & mask;
+        Entry<T> entry;
+        while ((entry = table.get(index)) != null) {
+            if (entry.matches(target.groupId, target.artifactId, target.version)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int hash(String groupId, String artifactId, String version) {
+        int h = Objects.hashCode(groupId);
+        h = 31 * h + Objects.hashCode(artifactId);
+        h = 31 * h + Objects.hashCode(version);
+        return h ^ (h >>> 16);
+    }
+
+    static final class Entry<T> {
+
+        private final String groupId;
+
+        private final String artifactId;
+
+        private final String version;
+
+        private final T value;
+
+        private final int hash;
+
+        Entry(String groupId, String artifactId, String version, T value) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.value = value;
+            this.hash = hash(groupId, artifactId, version);
+        }
+
+        boolean matches(String groupId, String artifactId, String version) {
+            return Objects.equals(this.artifactId, artifactId)
+                    && Objects.equals(this.groupId, groupId)
+                    && Objects.equals(this.version, version);
+        }
+
+    }
+
+}
@@ -0,0 +1,221 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Manifest of output file digests, written next to the packaged artifact.
+ * <p>
+ * Every line contains digest, size, modification time and relative path of output file. When checking
+ * whether packaged artifact is up-to-date only files which size or modification time differs from recorded
+ * ones get hashed.
+ */
+public class DigestManifest {
+
+    public static final String EXTENSION = ".imh-digest";
+
+    private static final String ALGORITHM = "SHA-1";
+
+    private final Map<String, Entry> entries;
+
+    private boolean refreshed;
+
+    protected DigestManifest(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static File getManifestFile(File packaged) {
+        return new File(packaged.getParentFile(), packaged.getName() + EXTENSION);
+    }
+
+    /**
+     * Builds manifest for the given output directory
+     *
+     * @param directory output directory
+     * @return manifest
+     * @throws IOException if directory can't be read
+     */
+    public static DigestManifest create(Path directory) throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String relative = getRelativePath(directory, file);
+                entries.put(relative, new Entry(digest(file), attrs.size(), attrs.lastModifiedTime().toMillis()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new DigestManifest(entries);
+    }
+
+    /**
+     * Reads previously stored manifest
+     *
+     * @param file manifest file
+     * @return manifest, null if file does not exist or is malformed
+     * @throws IOException if file can't be read
+     */
+    public static DigestManifest read(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tokens = line.split(" ", 4);
+                if (tokens.length != 4) {
+                    return null;
+                }
+                try {
+                    entries.put(tokens[3], new Entry(tokens[0], Long.parseLong(tokens[1]), Long.parseLong(tokens[2])));
+                } catch (NumberFormatException ex) {
+                    return null;
+                }
+            }
+        }
+        return new DigestManifest(entries);
+    }
+
+    public void write(File file) throws IOException {
+        Path target = file.toPath();
+        Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                writer.write(value.digest + ' ' + value.size + ' ' + value.modified + ' ' + entry.getKey());
+                writer.newLine();
+            }
+        } catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Compares manifest with the current content of output directory, refreshes modification times
+     * of entries which content has not been changed
+     *
+     * @param directory output directory
+     * @return relative path of the first changed, added or removed file, null if content is the same
+     * @throws IOException if directory can't be read
+     */
+    public String findChanged(Path directory) throws IOException {
+        String[] changed = new String[1];
+        int[] visited = new int[1];
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String relative = getRelativePath(directory, file);
+                Entry entry = entries.get(relative);
+                if (entry == null || entry.size != attrs.size()) {
+                    changed[0] = relative;
+                    return FileVisitResult.TERMINATE;
+                }
+                visited[0]++;
+                long modified = attrs.lastModifiedTime().toMillis();
+                if (entry.modified == modified) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (!entry.digest.equals(digest(file))) {
+                    changed[0] = relative;
+                    return FileVisitResult.TERMINATE;
+                }
+                entries.put(relative, new Entry(entry.digest, entry.size, modified));
+                refreshed = true;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (changed[0] == null && visited[0] != entries.size()) {
+            return entries.keySet().stream()
+                    .filter(relative -> !Files.exists(directory.resolve(relative)))
+                    .findFirst()
+                    .orElse(null);
+        }
+        return changed[0];
+    }
+
+    /**
+     * @return whether {@link #findChanged(Path)} has updated modification times of some entries
+     */
+    public boolean isRefreshed() {
+        return refreshed;
+    }
+
+    protected static String getRelativePath(Path directory, Path file) {
+        return directory.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    protected static String digest(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest()) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    static class Entry {
+
+        final String digest;
+
+        final long size;
+
+        final long modified;
+
+        Entry(String digest, long size, long modified) {
+            this.digest = digest;
+            this.size = size;
+            this.modified = modified;
+        }
+
+    }
+
+}
@@ -0,0 +1,201 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Materializes output directory as uncompressed jar.
+ * <p>
+ * Jar gets rebuilt only if output directory contains files newer than the jar or the set of files has changed,
+ * entries of unchanged files are copied from the previous jar as is, without recomputing checksums.
+ */
+public class DirectoryJarBuilder {
+
+    private final Map<File, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Brings jar in sync with output directory
+     *
+     * @param directory output directory
+     * @param jar       jar file
+     * @return true if jar has been rebuilt
+     * @throws IOException if jar can't be built
+     */
+    public boolean build(Path directory, File jar) throws IOException {
+        synchronized (locks.computeIfAbsent(jar.getAbsoluteFile(), k -> new Object())) {
+            Map<String, BasicFileAttributes> files = list(directory);
+            if (isActual(jar, files)) {
+                return false;
+            }
+            write(directory, jar, files);
+            return true;
+        }
+    }
+
+    protected Map<String, BasicFileAttributes> list(Path directory) throws IOException {
+        Map<String, BasicFileAttributes> files = new TreeMap<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(directory)) {
+                    files.put(getEntryName(directory, dir) + '/', attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.put(getEntryName(directory, file), attrs);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    protected boolean isActual(File jar, Map<String, BasicFileAttributes> files) throws IOException {
+        if (!jar.isFile()) {
+            return false;
+        }
+        long jarTime = jar.lastModified();
+        try (ZipFile zip = new ZipFile(jar)) {
+            if (zip.size() != files.size()) {
+                return false;
+            }
+            for (Map.Entry<String, BasicFileAttributes> file : files.entrySet()) {
+                ZipEntry entry = zip.getEntry(file.getKey());
+                if (!isUnchanged(entry, file.getValue(), jarTime)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    protected boolean isUnchanged(ZipEntry entry, BasicFileAttributes attributes, long jarTime) {
+        if (entry == null) {
+            return false;
+        }
+        if (attributes.isDirectory()) {
+            return entry.isDirectory();
+        }
+        return entry.getSize() == attributes.size() && attributes.lastModifiedTime().toMillis() < jarTime;
+    }
+
+    protected void write(Path directory, File jar, Map<String, BasicFileAttributes> files) throws IOException {
+        Path target = jar.toPath();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), jar.getName(), ".tmp");
+        ZipFile previous = jar.isFile() ? openQuietly(jar) : null;
+        long jarTime = jar.lastModified();
+        try (ZipOutputStream output = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            output.setMethod(ZipOutputStream.STORED);
+            byte[] buffer = new byte[8192];
+            for (Map.Entry<String, BasicFileAttributes> file : files.entrySet()) {
+                String name = file.getKey();
+                BasicFileAttributes attributes = file.getValue();
+                ZipEntry entry = new ZipEntry(name);
+                entry.setLastModifiedTime(attributes.lastModifiedTime());
+                if (attributes.isDirectory()) {
+                    entry.setSize(0);
+                    entry.setCrc(0);
+                    output.putNextEntry(entry);
+                    output.closeEntry();
+                    continue;
+                }
+                ZipEntry old = previous == null ? null : previous.getEntry(name);
+                if (isUnchanged(old, attributes, jarTime) && old.getCrc() != -1) {
+                    entry.setSize(old.getSize());
+                    entry.setCrc(old.getCrc());
+                    output.putNextEntry(entry);
+                    try (InputStream input = previous.getInputStream(old)) {
+                        copy(input, output, buffer);
+                    }
+                } else {
+                    Path source = directory.resolve(name);
+                    entry.setSize(attributes.size());
+                    entry.setCrc(checksum(source, buffer));
+                    output.putNextEntry(entry);
+                    try (InputStream input = Files.newInputStream(source)) {
+                        copy(input, output, buffer);
+                    }
+                }
+                output.closeEntry();
+            }
+        } catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        } finally {
+            if (previous != null) {
+                previous.close();
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    protected ZipFile openQuietly(File jar) {
+        try {
+            return new ZipFile(jar);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    protected long checksum(Path file, byte[] buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    protected void copy(InputStream input, OutputStream output, byte[] buffer) throws IOException {
+        int read;
+        while ((read = input.read(buffer)) > 0) {
+            output.write(buffer, 0, read);
+        }
+    }
+
+    protected String getEntryName(Path directory, Path file) {
+        return directory.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+}
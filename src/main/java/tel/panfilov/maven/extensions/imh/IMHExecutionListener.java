@@ -0,0 +1,194 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Tracks mojo executions in order to invalidate state IMH has computed for reactor modules
+ * and to stage installs into overlay repository
+ */
+public class IMHExecutionListener implements ExecutionListener {
+
+    private static final String INSTALL_PLUGIN = "maven-install-plugin";
+
+    private final ExecutionListener delegate;
+
+    private final IMHWorkspaceReader workspaceReader;
+
+    private IMHRepositoryManager repositoryManager;
+
+    public IMHExecutionListener(ExecutionListener delegate, IMHWorkspaceReader workspaceReader) {
+        this.delegate = delegate;
+        this.workspaceReader = workspaceReader;
+    }
+
+    public ExecutionListener getDelegate() {
+        return delegate;
+    }
+
+    public void setRepositoryManager(IMHRepositoryManager repositoryManager) {
+        this.repositoryManager = repositoryManager;
+    }
+
+    protected void mojoFinished(ExecutionEvent event) {
+        if (repositoryManager != null) {
+            repositoryManager.setStaging(false);
+        }
+        MavenProject project = event.getProject();
+        if (project != null && workspaceReader != null) {
+            workspaceReader.projectChanged(project);
+        }
+    }
+
+    protected boolean isInstallMojo(ExecutionEvent event) {
+        MojoExecution execution = event.getMojoExecution();
+        return execution != null && INSTALL_PLUGIN.equals(execution.getArtifactId());
+    }
+
+    @Override
+    public void projectDiscoveryStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectDiscoveryStarted(event);
+        }
+    }
+
+    @Override
+    public void sessionStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.sessionStarted(event);
+        }
+    }
+
+    @Override
+    public void sessionEnded(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.sessionEnded(event);
+        }
+    }
+
+    @Override
+    public void projectSkipped(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectSkipped(event);
+        }
+    }
+
+    @Override
+    public void projectStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectStarted(event);
+        }
+    }
+
+    @Override
+    public void projectSucceeded(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectSucceeded(event);
+        }
+    }
+
+    @Override
+    public void projectFailed(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectFailed(event);
+        }
+    }
+
+    @Override
+    public void mojoSkipped(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.mojoSkipped(event);
+        }
+    }
+
+    @Override
+    public void mojoStarted(ExecutionEvent event) {
+        if (repositoryManager != null) {
+            repositoryManager.setStaging(isInstallMojo(event));
+        }
+        if (delegate != null) {
+            delegate.mojoStarted(event);
+        }
+    }
+
+    @Override
+    public void mojoSucceeded(ExecutionEvent event) {
+        mojoFinished(event);
+        if (delegate != null) {
+            delegate.mojoSucceeded(event);
+        }
+    }
+
+    @Override
+    public void mojoFailed(ExecutionEvent event) {
+        mojoFinished(event);
+        if (delegate != null) {
+            delegate.mojoFailed(event);
+        }
+    }
+
+    @Override
+    public void forkStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkStarted(event);
+        }
+    }
+
+    @Override
+    public void forkSucceeded(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkSucceeded(event);
+        }
+    }
+
+    @Override
+    public void forkFailed(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkFailed(event);
+        }
+    }
+
+    @Override
+    public void forkedProjectStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkedProjectStarted(event);
+        }
+    }
+
+    @Override
+    public void forkedProjectSucceeded(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkedProjectSucceeded(event);
+        }
+    }
+
+    @Override
+    public void forkedProjectFailed(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkedProjectFailed(event);
+        }
+    }
+
+}
@@ -33,10 +33,14 @@ import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.util.StringUtils;
 import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.util.listener.ChainedRepositoryListener;
 import org.eclipse.aether.util.repository.ChainedWorkspaceReader;
 
 import java.io.File;
+import java.util.List;
+import java.util.Locale;
 
 @Component(role = AbstractMavenLifecycleParticipant.class)
 public class IMHLifecycleParticipant extends AbstractMavenLifecycleParticipant {
@@ -47,6 +51,18 @@ public class IMHLifecycleParticipant extends AbstractMavenLifecycleParticipant {
 
     public static final String REPOSITORY_ENABLED_FLAG = "imh.repository";
 
+    public static final String REPOSITORY_LINK_FLAG = "imh.repository.link";
+
+    public static final String REPOSITORY_STORE_PROPERTY = "imh.repository.store";
+
+    public static final String REPOSITORY_MAX_SIZE_PROPERTY = "imh.repository.maxsize";
+
+    public static final String REPOSITORY_GC_FLAG = "imh.repository.gc";
+
+    public static final String REPOSITORY_ASYNC_PROPERTY = "imh.repository.async";
+
+    public static final String REPOSITORY_CATALOG_FLAG = "imh.repository.catalog";
+
     @Requirement
     private Logger logger;
 
@@ -62,16 +78,32 @@ public class IMHLifecycleParticipant extends AbstractMavenLifecycleParticipant {
     @Requirement
     private RepositorySystem repoSystem;
 
-    private MavenProject rootProject;
+    private ReactorSnapshot rootReactor;
+
+    /**
+     * Root pom of the session, located once since that may require building the model of requested pom
+     */
+    private File rootPom;
+
+    private boolean deferredDiscovery;
+
+    private boolean sessionRootProject;
 
     @Override
     public void afterSessionStart(MavenSession session) throws MavenExecutionException {
+        resetSessionState(true);
+        rootPom = locateRootPom(session);
+        deferredDiscovery = isRootInvocation(session);
         setupWorkspaceReader(session);
         setupLocalRepositoryManager(session);
         setupLocalRepository(session);
     }
 
     public void afterProjectsRead(MavenSession session) throws MavenExecutionException {
+        if (deferredDiscovery) {
+            deferredDiscovery = false;
+            setupFromSessionProjects(session);
+        }
         for (MavenProject project : session.getProjects()) {
             if (isWorkspaceEnabled(session)) {
                 workspaceReader.addProject(project);
@@ -80,6 +112,94 @@ public class IMHLifecycleParticipant extends AbstractMavenLifecycleParticipant {
                 repositoryManager.addProject(project);
             }
         }
+        if (isRepositoryEnabled(session)) {
+            repositoryManager.buildFilter();
+        }
+    }
+
+    protected File locateRootPom(MavenSession session) {
+        if (!isWorkspaceEnabled(session) && !isRepositoryEnabled(session)) {
+            return null;
+        }
+        File pom = session.getRequest().getPom();
+        if (pom == null || !pom.isFile()) {
+            return null;
+        }
+        return rootProjectLocator.getRootPom(session);
+    }
+
+    /**
+     * When build starts at root project Maven builds the same projects IMH needs, so there is
+     * no need to build them twice
+     *
+     * @param session maven session
+     * @return whether root project discovery may be deferred till projects are read
+     */
+    protected boolean isRootInvocation(MavenSession session) {
+        if (!isWorkspaceEnabled(session) && !isRepositoryEnabled(session)) {
+            return false;
+        }
+        MavenExecutionRequest request = session.getRequest();
+        if (!request.isRecursive() || request.getPom() == null || !request.getPom().isFile()) {
+            return false;
+        }
+        return rootPom != null && normalize(rootPom).equals(normalize(request.getPom()));
+    }
+
+    protected void setupFromSessionProjects(MavenSession session) {
+        List<MavenProject> projects = session.getAllProjects();
+        if (projects == null) {
+            projects = session.getProjects();
+        }
+        File requestPom = normalize(session.getRequest().getPom());
+        MavenProject rootProject = projects.stream()
+                .filter(p -> p.getFile() != null && normalize(p.getFile()).equals(requestPom))
+                .findFirst()
+                .orElse(null);
+        if (rootProject == null) {
+            logger.info("[IMH] failed to discover root project");
+            return;
+        }
+        logger.debug("[IMH] using session projects as root reactor");
+        sessionRootProject = true;
+        rootReactor = ReactorSnapshot.of(rootProject);
+        if (isWorkspaceEnabled(session)) {
+            workspaceReader.setRootProject(rootReactor);
+        }
+        if (isRepositoryEnabled(session)) {
+            configureRepositoryManager(session, rootReactor);
+        }
+    }
+
+    protected File normalize(File file) {
+        return file.toPath().toAbsolutePath().normalize().toFile();
+    }
+
+    @Override
+    public void afterSessionEnd(MavenSession session) throws MavenExecutionException {
+        if (isWorkspaceEnabled(session)) {
+            workspaceReader.sessionEnded();
+        }
+        if (isRepositoryEnabled(session)) {
+            repositoryManager.sessionEnded();
+        }
+        // session projects must not outlive the session, root project built by locator may be reused
+        resetSessionState(!sessionRootProject);
+    }
+
+    /**
+     * Components are singletons, so in long-lived JVMs (e.g. Maven Daemon) they outlive the session,
+     * all session-bound state gets dropped here
+     *
+     * @param retainRoot whether index of root reactor may be reused by the next session
+     */
+    protected void resetSessionState(boolean retainRoot) {
+        rootReactor = null;
+        rootPom = null;
+        sessionRootProject = false;
+        deferredDiscovery = false;
+        workspaceReader.reset(retainRoot);
+        repositoryManager.reset(retainRoot);
     }
 
     protected void setupLocalRepository(MavenSession mavenSession) {
@@ -105,45 +225,128 @@ public class IMHLifecycleParticipant extends AbstractMavenLifecycleParticipant {
 
             logger.info("[IMH] setting up overlay repository");
 
-            MavenProject rootProject = getRootProject(mavenSession);
-            if (rootProject == null) {
-                logger.info("[IMH] failed to discover root project");
-                return;
-            }
-
-            File overlayPath = getOverlayRepositoryPath(rootProject);
-            if (overlayPath == null) {
-                logger.info("[IMH] empty overlay repository path");
-                return;
+            DefaultRepositorySystemSession repositorySession = (DefaultRepositorySystemSession) mavenSession.getRepositorySession();
+            // repository session becomes read-only before projects are read, so overlay gets configured later
+            repositoryManager.setLocalRepositoryManager(repositorySession.getLocalRepositoryManager());
+            if (!deferredDiscovery) {
+                ReactorSnapshot rootReactor = getRootReactor(mavenSession);
+                if (rootReactor == null) {
+                    logger.info("[IMH] failed to discover root project");
+                    return;
+                }
+                if (!configureRepositoryManager(mavenSession, rootReactor)) {
+                    return;
+                }
             }
 
-            DefaultRepositorySystemSession repositorySession = (DefaultRepositorySystemSession) mavenSession.getRepositorySession();
-            repositoryManager.setRootProject(rootProject);
-            repositoryManager.setRepositoryManagers(
-                    repositorySession.getLocalRepositoryManager(),
-                    repoSystem.newLocalRepositoryManager(
-                            repositorySession,
-                            new LocalRepository(overlayPath)
-                    )
-            );
             repositorySession.setLocalRepositoryManager(repositoryManager);
+            repositorySession.setRepositoryListener(ChainedRepositoryListener.newInstance(
+                    repositorySession.getRepositoryListener(),
+                    new IMHRepositoryListener(repositoryManager)
+            ));
+
+            MavenExecutionRequest request = mavenSession.getRequest();
+            if (!(request.getExecutionListener() instanceof IMHExecutionListener)) {
+                request.setExecutionListener(new IMHExecutionListener(request.getExecutionListener(), null));
+            }
+            ((IMHExecutionListener) request.getExecutionListener()).setRepositoryManager(repositoryManager);
 
         } catch (ComponentLookupException | ProjectBuildingException ex) {
             logger.error("[IMH] Failed to setup repository", ex);
         }
     }
 
-    protected File getOverlayRepositoryPath(MavenProject rootProject) {
-        String path = rootProject.getProperties().getProperty("imh.repository");
+    protected boolean configureRepositoryManager(MavenSession mavenSession, ReactorSnapshot rootReactor) {
+        ReactorModule rootProject = rootReactor.getRoot();
+        File overlayPath = getOverlayRepositoryPath(rootProject);
+        if (overlayPath == null) {
+            logger.info("[IMH] empty overlay repository path");
+            return false;
+        }
+
+        RepositorySystemSession repositorySession = mavenSession.getRepositorySession();
+        repositoryManager.setRootProject(rootReactor);
+        repositoryManager.setLinkEnabled(isRepositoryLinkEnabled(mavenSession));
+        repositoryManager.setOverlayRepositoryManager(repoSystem.newLocalRepositoryManager(
+                repositorySession,
+                new LocalRepository(overlayPath)
+        ));
+        File storePath = getContentStorePath(mavenSession, rootProject);
+        if (storePath != null) {
+            logger.info("[IMH] using content store: " + storePath.getPath());
+            repositoryManager.setContentStore(new ContentStore(storePath.toPath(), overlayPath.toPath()));
+        } else {
+            repositoryManager.setContentStore(null);
+        }
+        repositoryManager.setCatalog(isRepositoryCatalogEnabled(mavenSession)
+                ? new OverlayCatalog(overlayPath.toPath().toAbsolutePath()) : null);
+        repositoryManager.setMaxSize(getRepositoryMaxSize(mavenSession, rootProject));
+        repositoryManager.setCollectGarbage(isRepositoryGcEnabled(mavenSession));
+        int writeBehindThreads = getWriteBehindThreads(mavenSession);
+        if (writeBehindThreads > 0) {
+            logger.info("[IMH] using write-behind install into overlay repository");
+            repositoryManager.setWriteBehind(new WriteBehindQueue(writeBehindThreads,
+                    ex -> logger.warn("[IMH] Failed to write into overlay repository", ex)));
+        }
+        return true;
+    }
+
+    protected File getOverlayRepositoryPath(ReactorModule rootProject) {
+        String path = rootProject.getProperty("imh.repository");
         if (!StringUtils.isEmpty(path)) {
             logger.info("[IMH] using overlay repository from root project properties: " + path);
             return new File(path);
         }
-        File repository = new File(rootProject.getBuild().getDirectory(), "local-repo");
+        File repository = new File(rootProject.getDirectory(), "local-repo");
         logger.info("[IMH] using root project target folder as overlay repository: " + repository.getPath());
         return repository;
     }
 
+    protected File getContentStorePath(MavenSession mavenSession, ReactorModule rootProject) {
+        String path = mavenSession.getUserProperties().getProperty(REPOSITORY_STORE_PROPERTY);
+        if (StringUtils.isEmpty(path)) {
+            path = rootProject.getProperty(REPOSITORY_STORE_PROPERTY);
+        }
+        if (StringUtils.isEmpty(path)) {
+            return null;
+        }
+        return new File(path).getAbsoluteFile();
+    }
+
+    protected long getRepositoryMaxSize(MavenSession mavenSession, ReactorModule rootProject) {
+        String value = mavenSession.getUserProperties().getProperty(REPOSITORY_MAX_SIZE_PROPERTY);
+        if (StringUtils.isEmpty(value)) {
+            value = rootProject.getProperty(REPOSITORY_MAX_SIZE_PROPERTY);
+        }
+        if (StringUtils.isEmpty(value)) {
+            return -1;
+        }
+        value = value.trim().toUpperCase(Locale.ROOT);
+        long multiplier = 1;
+        switch (value.charAt(value.length() - 1)) {
+            case 'K':
+                multiplier = 1L << 10;
+                break;
+            case 'M':
+                multiplier = 1L << 20;
+                break;
+            case 'G':
+                multiplier = 1L << 30;
+                break;
+            default:
+                break;
+        }
+        if (multiplier > 1) {
+            value = value.substring(0, value.length() - 1).trim();
+        }
+        try {
+            return Long.parseLong(value) * multiplier;
+        } catch (NumberFormatException ex) {
+            logger.warn("[IMH] invalid overlay repository size limit: " + value);
+            return -1;
+        }
+    }
+
     protected void setupWorkspaceReader(MavenSession mavenSession) {
         try {
             MavenExecutionRequest request = mavenSession.getRequest();
@@ -159,25 +362,66 @@ public class IMHLifecycleParticipant extends AbstractMavenLifecycleParticipant {
                 return;
             }
 
+            if (deferredDiscovery) {
+                logger.debug("[IMH] deferring root project discovery till projects are read");
+                return;
+            }
+
+            if (!isRepositoryEnabled(mavenSession)) {
+                setupLazyDiscovery(mavenSession);
+                return;
+            }
+
             logger.debug("[IMH] setting up workspace");
-            MavenProject rootProject = getRootProject(mavenSession);
-            if (rootProject == null) {
+            ReactorSnapshot rootReactor = getRootReactor(mavenSession);
+            if (rootReactor == null) {
                 logger.info("[IMH] failed to discover root project");
                 return;
             }
 
-            workspaceReader.setRootProject(rootProject);
+            workspaceReader.setRootProject(rootReactor);
         } catch (ComponentLookupException | ProjectBuildingException ex) {
             logger.error("[IMH] Failed to setup workspace reader", ex);
         }
     }
 
+    /**
+     * Root project gets discovered on the first lookup of artifact which might belong to root reactor,
+     * overlay repository requires root project upfront, so that is possible only if workspace extension
+     * is enabled alone
+     *
+     * @param mavenSession maven session
+     */
+    protected void setupLazyDiscovery(MavenSession mavenSession) {
+        if (rootPom == null) {
+            logger.info("[IMH] failed to discover root project");
+            return;
+        }
+        logger.debug("[IMH] deferring root project discovery till the first reactor lookup");
+        workspaceReader.setRootProject(() -> {
+            try {
+                ReactorSnapshot reactor = getRootReactor(mavenSession);
+                if (reactor == null) {
+                    logger.info("[IMH] failed to discover root project");
+                }
+                return reactor;
+            } catch (ComponentLookupException | ProjectBuildingException ex) {
+                logger.error("[IMH] Failed to setup workspace reader", ex);
+                return null;
+            }
+        }, rootProjectLocator.getReactorCandidates(rootPom));
+    }
+
     protected void injectWorkspaceReader(MavenSession mavenSession, MavenExecutionRequest request) {
         // that would be better to use EventSpy#onEvent instead,
         // however IntelliJ triggers afterSessionStart event only
 
         workspaceReader.setMavenExecutionRequest(request);
 
+        if (!(request.getExecutionListener() instanceof IMHExecutionListener)) {
+            request.setExecutionListener(new IMHExecutionListener(request.getExecutionListener(), workspaceReader));
+        }
+
         DefaultRepositorySystemSession repositorySystemSession = (DefaultRepositorySystemSession) mavenSession.getRepositorySession();
         repositorySystemSession.setWorkspaceReader(ChainedWorkspaceReader.newInstance(
                 workspaceReader,
@@ -185,11 +429,11 @@ public class IMHLifecycleParticipant extends AbstractMavenLifecycleParticipant {
         ));
     }
 
-    protected MavenProject getRootProject(MavenSession mavenSession) throws ProjectBuildingException, ComponentLookupException {
-        if (rootProject == null) {
-            rootProject = rootProjectLocator.getRootProject(mavenSession);
+    protected ReactorSnapshot getRootReactor(MavenSession mavenSession) throws ProjectBuildingException, ComponentLookupException {
+        if (rootReactor == null && rootPom != null) {
+            rootReactor = rootProjectLocator.getRootReactor(mavenSession, rootPom);
         }
-        return rootProject;
+        return rootReactor;
     }
 
     protected boolean isWorkspaceEnabled(MavenSession session) {
@@ -201,5 +445,40 @@ public class IMHLifecycleParticipant extends AbstractMavenLifecycleParticipant {
         return "true".equalsIgnoreCase(session.getUserProperties().getProperty(REPOSITORY_ENABLED_FLAG));
     }
 
+    protected boolean isRepositoryLinkEnabled(MavenSession session) {
+        return "true".equalsIgnoreCase(session.getUserProperties().getProperty(REPOSITORY_LINK_FLAG));
+    }
+
+    /**
+     * Write-behind install is enabled either via {@code -Dimh.repository.async}
+     * or via {@code -Dimh.repository.async=<threads>}
+     *
+     * @param session maven session
+     * @return number of background threads, 0 if write-behind install is disabled
+     */
+    protected int getWriteBehindThreads(MavenSession session) {
+        String value = session.getUserProperties().getProperty(REPOSITORY_ASYNC_PROPERTY);
+        if (StringUtils.isEmpty(value) || "false".equalsIgnoreCase(value)) {
+            return 0;
+        }
+        if ("true".equalsIgnoreCase(value)) {
+            return 2;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException ex) {
+            logger.warn("[IMH] invalid number of write-behind threads: " + value);
+            return 0;
+        }
+    }
+
+    protected boolean isRepositoryCatalogEnabled(MavenSession session) {
+        return "true".equalsIgnoreCase(session.getUserProperties().getProperty(REPOSITORY_CATALOG_FLAG));
+    }
+
+    protected boolean isRepositoryGcEnabled(MavenSession session) {
+        return "true".equalsIgnoreCase(session.getUserProperties().getProperty(REPOSITORY_GC_FLAG));
+    }
+
 
 }
@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.RepositoryEvent;
+
+/**
+ * Lets {@link IMHRepositoryManager} prepare overlay repository for artifacts and metadata being installed
+ */
+public class IMHRepositoryListener extends AbstractRepositoryListener {
+
+    private final IMHRepositoryManager repositoryManager;
+
+    public IMHRepositoryListener(IMHRepositoryManager repositoryManager) {
+        this.repositoryManager = repositoryManager;
+    }
+
+    @Override
+    public void artifactInstalling(RepositoryEvent event) {
+        if (event.getArtifact() != null && event.getFile() != null) {
+            repositoryManager.artifactInstalling(event.getArtifact(), event.getFile());
+        }
+    }
+
+    @Override
+    public void artifactInstalled(RepositoryEvent event) {
+        if (event.getArtifact() != null && event.getFile() != null) {
+            repositoryManager.artifactInstalled(event.getArtifact(), event.getFile(), event.getException());
+        }
+    }
+
+    @Override
+    public void metadataInstalling(RepositoryEvent event) {
+        if (event.getMetadata() != null && event.getFile() != null) {
+            repositoryManager.metadataInstalling(event.getMetadata(), event.getFile());
+        }
+    }
+
+    @Override
+    public void metadataInstalled(RepositoryEvent event) {
+        if (event.getMetadata() != null && event.getFile() != null) {
+            repositoryManager.metadataInstalled(event.getMetadata(), event.getFile(), event.getException());
+        }
+    }
+
+}
@@ -1,6 +1,9 @@
 package tel.panfilov.maven.extensions.imh;
 
 import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.util.StringUtils;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.metadata.Metadata;
@@ -15,30 +18,673 @@ import org.eclipse.aether.repository.LocalRepositoryManager;
 import org.eclipse.aether.repository.RemoteRepository;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
+/**
+ * Local repository manager which keeps artifacts of reactor coordinates in overlay repository and delegates
+ * the rest of requests to local repository.
+ */
 @Component(role = IMHRepositoryManager.class, hint = "imh")
 public class IMHRepositoryManager extends AbstractProjectAware implements LocalRepositoryManager {
 
+    /**
+     * Suffix of files poms and metadata are written into before they get renamed over the actual ones
+     */
+    public static final String STAGING_SUFFIX = ".imh-staging";
+
+    @Requirement
+    private Logger logger;
+
     private LocalRepositoryManager local;
 
-    private LocalRepositoryManager overlay;
+    private volatile LocalRepositoryManager overlay;
 
     private Path localDir;
 
     private Path overlayDir;
 
+    private volatile CoordinateFilter filter;
+
+    private String overlayPrefix;
+
+    private boolean linkEnabled;
+
+    private ContentStore contentStore;
+
+    private OverlayCollector collector;
+
+    private OverlayLocks locks;
+
+    private volatile WriteBehindQueue writeBehind;
+
+    private OverlayCatalog catalog;
+
+    private long maxSize = -1;
+
+    private boolean collectGarbage;
+
+    private final ThreadLocal<Boolean> staging = new ThreadLocal<>();
+
+    private final Set<File> unprepared = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param local   local repository manager
+     * @param overlay overlay repository manager
+     */
     public void setRepositoryManagers(LocalRepositoryManager local, LocalRepositoryManager overlay) {
+        setLocalRepositoryManager(local);
+        setOverlayRepositoryManager(overlay);
+    }
+
+    /**
+     * Sets repository manager of local repository, until overlay repository manager is set all requests
+     * are delegated to local repository
+     *
+     * @param local local repository manager
+     */
+    public void setLocalRepositoryManager(LocalRepositoryManager local) {
         this.local = local;
+        this.localDir = local.getRepository().getBasedir().toPath().toAbsolutePath().normalize();
+        this.overlay = null;
+        this.overlayDir = null;
+        this.collector = null;
+    }
+
+    /**
+     * Sets repository manager of overlay repository, requests of reactor coordinates get served by
+     * overlay repository since then
+     *
+     * @param overlay overlay repository manager
+     */
+    public void setOverlayRepositoryManager(LocalRepositoryManager overlay) {
+        this.overlayDir = overlay.getRepository().getBasedir().toPath().toAbsolutePath().normalize();
+        closeLocks();
+        this.locks = new OverlayLocks(overlayDir);
+        this.collector = new OverlayCollector(overlayDir, locks);
+        String prefix = localDir.relativize(overlayDir).toString();
+        this.overlayPrefix = prefix.isEmpty() ? prefix : prefix + File.separatorChar;
         this.overlay = overlay;
-        this.localDir = local.getRepository().getBasedir().toPath();
-        this.overlayDir = overlay.getRepository().getBasedir().toPath();
     }
 
+    /**
+     * @param linkEnabled whether artifacts (except poms) get installed as hard links to packaged files
+     */
+    public void setLinkEnabled(boolean linkEnabled) {
+        this.linkEnabled = linkEnabled;
+    }
+
+    /**
+     * @param contentStore store artifacts get installed into, null if artifacts are kept in overlay repository only
+     */
+    public void setContentStore(ContentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    /**
+     * @param maxSize size limit of overlay repository in bytes, negative if unlimited
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param collectGarbage whether to evict all coordinates which do not belong to the current reactor
+     *                       regardless of size limit
+     */
+    public void setCollectGarbage(boolean collectGarbage) {
+        this.collectGarbage = collectGarbage;
+    }
+
+    /**
+     * @param catalog catalog of installed artifacts, null if lookups are answered by overlay repository manager
+     */
+    public void setCatalog(OverlayCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Replaces write-behind queue, pending writes of the previous queue are completed first
+     *
+     * @param writeBehind queue of background writes, null if artifacts get written synchronously
+     */
+    public void setWriteBehind(WriteBehindQueue writeBehind) {
+        closeWriteBehind();
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Completes pending writes and stops write-behind queue, queue must never be dropped otherwise:
+     * artifacts placed as hard links would never get replaced with copies
+     */
+    protected void closeWriteBehind() {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            queue.close();
+            writeBehind = null;
+        }
+    }
+
+    /**
+     * Makes installs performed by the current thread write poms and metadata of reactor coordinates
+     * into staging files, which get renamed over the actual ones once written, supposed to be enabled
+     * for the duration of install mojo
+     *
+     * @param enabled whether staging is enabled for the current thread
+     */
+    public void setStaging(boolean enabled) {
+        if (enabled) {
+            staging.set(Boolean.TRUE);
+        } else {
+            staging.remove();
+        }
+    }
+
+    protected boolean isStaging() {
+        return staging.get() != null;
+    }
+
+    protected static boolean isStaged(File target) {
+        return target.getName().endsWith(STAGING_SUFFIX);
+    }
+
+    protected static File getPublished(File staged) {
+        String name = staged.getName();
+        return new File(staged.getParentFile(), name.substring(0, name.length() - STAGING_SUFFIX.length()));
+    }
+
+    /**
+     * Completes pending writes, collects garbage and persists catalog and content store index,
+     * supposed to be called when session ends
+     */
+    public void sessionEnded() {
+        closeWriteBehind();
+        if (collector != null) {
+            collectGarbage();
+        }
+        if (catalog != null) {
+            try {
+                catalog.save();
+            } catch (IOException ex) {
+                logger.warn("[IMH] Failed to save overlay catalog", ex);
+            } finally {
+                catalog.close();
+            }
+        }
+        if (contentStore != null) {
+            try {
+                contentStore.save();
+            } catch (IOException ex) {
+                logger.warn("[IMH] Failed to save content store index", ex);
+            }
+        }
+        closeLocks();
+    }
+
+    /**
+     * Releases lock files of overlay repository, locks get reopened on demand
+     */
+    protected void closeLocks() {
+        if (locks != null) {
+            locks.close();
+        }
+    }
+
+    /**
+     * Persists access times of overlay coordinates and, once overlay repository exceeds size limit
+     * or collection is requested explicitly, evicts least recently used coordinates which do not belong
+     * to the current reactor
+     */
+    protected void collectGarbage() {
+        try {
+            if (!collectGarbage && maxSize < 0) {
+                collector.saveAccessTimes();
+                return;
+            }
+            long freed = collector.collect(
+                    c -> projects.contains(c.getGroupId(), c.getArtifactId(), c.getVersion()),
+                    collectGarbage ? -1 : maxSize,
+                    (coordinate, relative) -> {
+                        if (catalog != null) {
+                            catalog.remove(relative);
+                        }
+                        if (contentStore != null) {
+                            contentStore.remove(relative);
+                        }
+                    }
+            );
+            if (freed > 0) {
+                logger.info("[IMH] evicted " + freed + " bytes from overlay repository");
+            }
+        } catch (IOException ex) {
+            logger.warn("[IMH] Failed to collect overlay repository garbage", ex);
+        }
+    }
+
+    protected void accessed(String groupId, String artifactId, String version) {
+        if (collector != null && !StringUtils.isEmpty(version)) {
+            collector.accessed(groupId, artifactId, version);
+        }
+    }
+
+    protected boolean isOverlayFile(File file) {
+        return overlayDir != null && file.toPath().toAbsolutePath().normalize().startsWith(overlayDir);
+    }
+
+    /**
+     * Prepares overlay repository for artifact being installed: places it as hard link to the stored content,
+     * to the packaged file or publishes its copy via atomic rename, once source and target have the same size
+     * and modification time installer skips copying. Coordinate stays locked till {@link #artifactInstalled}
+     *
+     * @param artifact artifact being installed
+     * @param target   target file in overlay repository
+     */
+    public void artifactInstalling(Artifact artifact, File target) {
+        if (!isReactorArtifact(artifact) || !isOverlayFile(target)) {
+            return;
+        }
+        locks.lock(artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion());
+        if (isStaged(target)) {
+            // published on install completion
+            return;
+        }
+
+        File source = artifact.getFile();
+        if (source == null || !source.isFile()) {
+            return;
+        }
+
+        // installer always copies poms, copying file to its own hard link would truncate it
+        if (!"pom".equals(artifact.getExtension())) {
+            if (contentStore != null && installToStore(source, target)) {
+                return;
+            }
+            if (linkEnabled && link(source, target)) {
+                return;
+            }
+            WriteBehindQueue queue = writeBehind;
+            if (queue != null && publishLater(queue, artifact, source, target)) {
+                return;
+            }
+            if (publish(source, target)) {
+                return;
+            }
+        }
+
+        unlinkShared(target);
+    }
+
+    /**
+     * Publishes staged artifact and releases coordinate lock
+     *
+     * @param artifact  installed artifact
+     * @param target    target file in overlay repository
+     * @param exception install failure, null if artifact has been installed
+     */
+    public void artifactInstalled(Artifact artifact, File target, Exception exception) {
+        if (!isReactorArtifact(artifact) || !isOverlayFile(target)) {
+            return;
+        }
+        try {
+            if (isStaged(target) && publishStaged(target, exception == null) && catalog != null) {
+                addToCatalog(overlayDir.relativize(getPublished(target).toPath().toAbsolutePath().normalize())
+                        .toString().replace(File.separatorChar, '/'));
+            }
+        } finally {
+            locks.unlock(artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion());
+        }
+    }
+
+    /**
+     * Locks metadata coordinate till {@link #metadataInstalled}, so concurrent invocations do not lose
+     * each other's updates of metadata, staged metadata is initialized with the actual one, since installer
+     * merges new metadata into existing file
+     *
+     * @param metadata metadata being installed
+     * @param target   target file in overlay repository
+     */
+    public void metadataInstalling(Metadata metadata, File target) {
+        if (isReactorArtifact(metadata) && isOverlayFile(target)) {
+            locks.lock(metadata.getGroupId(), metadata.getArtifactId(), metadata.getVersion());
+            if (isStaged(target)) {
+                prepareStaged(target);
+            }
+        }
+    }
+
+    /**
+     * Publishes staged metadata and releases coordinate lock
+     *
+     * @param metadata  installed metadata
+     * @param target    target file in overlay repository
+     * @param exception install failure, null if metadata has been installed
+     */
+    public void metadataInstalled(Metadata metadata, File target, Exception exception) {
+        if (isReactorArtifact(metadata) && isOverlayFile(target)) {
+            try {
+                if (isStaged(target)) {
+                    publishStaged(target, exception == null);
+                }
+            } finally {
+                locks.unlock(metadata.getGroupId(), metadata.getArtifactId(), metadata.getVersion());
+            }
+        }
+    }
+
+    protected void prepareStaged(File staged) {
+        File published = getPublished(staged);
+        try {
+            if (published.isFile()) {
+                Files.copy(published.toPath(), staged.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            } else {
+                Files.deleteIfExists(staged.toPath());
+            }
+        } catch (IOException | SecurityException ex) {
+            // publishing merge result would lose existing metadata
+            logger.warn("[IMH] Failed to stage " + published + ", it won't be updated: " + ex.getMessage());
+            unprepared.add(staged);
+        }
+    }
+
+    /**
+     * Renames staged file over the actual one, so concurrent readers never observe partially written file
+     *
+     * @param staged    staged file
+     * @param succeeded whether installer has written staged file successfully
+     * @return whether staged file has been published
+     */
+    protected boolean publishStaged(File staged, boolean succeeded) {
+        Path stagedPath = staged.toPath();
+        Path publishedPath = getPublished(staged).toPath();
+        try {
+            if (!unprepared.remove(staged) && succeeded && Files.isRegularFile(stagedPath)) {
+                try {
+                    Files.move(stagedPath, publishedPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(stagedPath, publishedPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return true;
+            }
+            Files.deleteIfExists(stagedPath);
+        } catch (IOException | SecurityException ex) {
+            logger.warn("[IMH] Failed to publish " + publishedPath + ": " + ex.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Copies source file next to the target and renames it over the target, so concurrent readers
+     * never observe partially written artifact
+     *
+     * @param source file being installed
+     * @param target target file in overlay repository
+     * @return whether the file has been published
+     */
+    protected boolean publish(File source, File target) {
+        Path targetPath = target.toPath();
+        Path temp = targetPath.resolveSibling(target.getName() + ".imh-" + Long.toHexString(System.nanoTime()));
+        try {
+            if (target.isFile() && target.length() == source.length() && target.lastModified() == source.lastModified()
+                    && !isShared(target)) {
+                return true;
+            }
+            Files.createDirectories(targetPath.getParent());
+            Files.copy(source.toPath(), temp);
+            Files.setLastModifiedTime(temp, Files.getLastModifiedTime(source.toPath()));
+            Files.move(temp, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException ex) {
+            logger.debug("[IMH] Failed to publish " + target + ", copying in place: " + ex.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignore) {
+                // ignore
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Places target as hard link to the packaged file, so installer skips copying, and queues replacing
+     * the link with a copy of the file
+     *
+     * @param queue    write-behind queue
+     * @param artifact artifact being installed
+     * @param source   file being installed
+     * @param target   target file in overlay repository
+     * @return whether the file has been placed
+     */
+    protected boolean publishLater(WriteBehindQueue queue, Artifact artifact, File source, File target) {
+        if (!link(source, target)) {
+            return false;
+        }
+        String groupId = artifact.getGroupId();
+        String artifactId = artifact.getArtifactId();
+        String version = artifact.getBaseVersion();
+        queue.submit(getKey(groupId, artifactId, version), () -> {
+            locks.lock(groupId, artifactId, version);
+            try {
+                if (isShared(target) && !publish(source, target)) {
+                    logger.warn("[IMH] Failed to publish " + target + ", it remains linked to " + source);
+                }
+            } finally {
+                locks.unlock(groupId, artifactId, version);
+            }
+        });
+        return true;
+    }
+
+    protected void awaitWrites(String groupId, String artifactId, String version) {
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            queue.await(getKey(groupId, artifactId, version));
+        }
+    }
+
+    /**
+     * Performs overlay registration under coordinate lock, in write-behind mode registration is queued
+     *
+     * @param groupId      groupId
+     * @param artifactId   artifactId
+     * @param version      base version
+     * @param registration registration
+     */
+    protected void register(String groupId, String artifactId, String version, Runnable registration) {
+        Runnable locked = () -> {
+            locks.lock(groupId, artifactId, version);
+            try {
+                registration.run();
+            } finally {
+                locks.unlock(groupId, artifactId, version);
+            }
+        };
+        WriteBehindQueue queue = writeBehind;
+        if (queue != null) {
+            queue.submit(getKey(groupId, artifactId, version), locked);
+        } else {
+            locked.run();
+        }
+    }
+
+    /**
+     * Answers lookup of installed artifact from catalog, falls back to overlay repository manager
+     * and records installed artifacts it has found
+     *
+     * @param session repository session
+     * @param request lookup request
+     * @return lookup result
+     */
+    protected LocalArtifactResult findInCatalog(RepositorySystemSession session, LocalArtifactRequest request) {
+        String path = overlay.getPathForLocalArtifact(request.getArtifact());
+        if (catalog.find(path) != null) {
+            LocalArtifactResult result = new LocalArtifactResult(request);
+            result.setFile(overlayDir.resolve(path).toFile());
+            result.setAvailable(true);
+            return result;
+        }
+        LocalArtifactResult result = overlay.find(session, request);
+        if (result.isAvailable() && result.getRepository() == null && result.getFile() != null) {
+            addToCatalog(path);
+        }
+        return result;
+    }
+
+    protected void addToCatalog(String path) {
+        File file = overlayDir.resolve(path).toFile();
+        if (file.isFile()) {
+            catalog.add(path, file.length(), file.lastModified());
+        }
+    }
+
+    protected static String getKey(String groupId, String artifactId, String version) {
+        return groupId + ':' + artifactId + ':' + version;
+    }
+
+    protected boolean installToStore(File source, File target) {
+        try {
+            String relative = overlayDir.relativize(target.toPath().toAbsolutePath().normalize()).toString();
+            contentStore.install(source.toPath(), target.toPath(), relative.replace(File.separatorChar, '/'));
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException ex) {
+            logger.debug("[IMH] Failed to install " + target + " via content store, falling back: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    protected boolean link(File source, File target) {
+        Path targetPath = target.toPath();
+        Path temp = targetPath.resolveSibling(target.getName() + ".imh-" + Long.toHexString(System.nanoTime()));
+        try {
+            if (target.isFile() && Files.isSameFile(source.toPath(), targetPath)) {
+                return true;
+            }
+            Files.createDirectories(targetPath.getParent());
+            Files.createLink(temp, source.toPath());
+            Files.move(temp, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException ex) {
+            logger.debug("[IMH] Failed to link " + target + " to " + source + ", copying instead: " + ex.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignore) {
+                // ignore
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes target file if it is a hard link, so installer does not write into content shared
+     * with other files
+     *
+     * @param target target file in overlay repository
+     */
+    protected void unlinkShared(File target) {
+        if (isShared(target)) {
+            try {
+                Files.delete(target.toPath());
+            } catch (IOException | SecurityException ex) {
+                // installer will fail to overwrite the file as well
+            }
+        }
+    }
+
+    protected boolean isShared(File target) {
+        try {
+            Object links = Files.getAttribute(target.toPath(), "unix:nlink");
+            return links instanceof Integer && (Integer) links > 1;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException | SecurityException ex) {
+            // not a hard link or not supported by file system
+            return false;
+        }
+    }
+
+    @Override
+    public void setRootProject(ReactorSnapshot reactor) {
+        super.setRootProject(reactor);
+        filter = null;
+    }
+
+    @Override
+    protected ReactorModule addModule(ReactorModule module) {
+        ReactorModule previous = super.addModule(module);
+        filter = null;
+        return previous;
+    }
+
+    @Override
+    public void reset(boolean retainRoot) {
+        // pending writes need overlay repository and its locks
+        closeWriteBehind();
+        closeLocks();
+        if (catalog != null) {
+            catalog.close();
+        }
+        super.reset(retainRoot);
+        locks = null;
+        unprepared.clear();
+        filter = null;
+        overlay = null;
+        overlayDir = null;
+        collector = null;
+        contentStore = null;
+        catalog = null;
+    }
+
+    /**
+     * Builds filter allowing to reject non-reactor coordinates without probing reactor index,
+     * supposed to be called once reactor is known
+     */
+    public void buildFilter() {
+        filter = CoordinateFilter.of(projects.values().stream()
+                .map(ReactorModule::getCoordinates)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public boolean isReactorArtifact(Artifact artifact) {
+        if (overlay == null) {
+            return false;
+        }
+        CoordinateFilter current = filter;
+        if (current != null && !current.mightContain(artifact.getGroupId(), artifact.getArtifactId())) {
+            return false;
+        }
+        return super.isReactorArtifact(artifact);
+    }
+
+    @Override
+    protected boolean isReactorArtifact(Metadata metadata) {
+        if (overlay == null) {
+            return false;
+        }
+        CoordinateFilter current = filter;
+        if (current != null && !current.mightContain(metadata.getGroupId(), metadata.getArtifactId())) {
+            return false;
+        }
+        return super.isReactorArtifact(metadata);
+    }
+
+    /**
+     * Translates path within overlay repository into path relative to local repository
+     *
+     * @param path path within overlay repository
+     * @return path within local repository
+     */
     protected String relativize(String path) {
-        return localDir.relativize(overlayDir.resolve(path)).toString();
+        return overlayPrefix + path.replace('/', File.separatorChar);
     }
 
+    /**
+     * @param artifact artifact
+     * @return file of reactor artifact within overlay repository, null if artifact does not belong to reactor
+     */
     public File getLocalArtifact(Artifact artifact) {
         if (isReactorArtifact(artifact)) {
             String localPart = overlay.getPathForLocalArtifact(artifact);
@@ -57,7 +703,9 @@ public class IMHRepositoryManager extends AbstractProjectAware implements LocalR
     @Override
     public String getPathForLocalArtifact(Artifact artifact) {
         if (isReactorArtifact(artifact)) {
-            return relativize(overlay.getPathForLocalArtifact(artifact));
+            String path = relativize(overlay.getPathForLocalArtifact(artifact));
+            // installer always rewrites poms in place
+            return isStaging() && "pom".equals(artifact.getExtension()) ? path + STAGING_SUFFIX : path;
         } else {
             return local.getPathForLocalArtifact(artifact);
         }
@@ -75,7 +723,9 @@ public class IMHRepositoryManager extends AbstractProjectAware implements LocalR
     @Override
     public String getPathForLocalMetadata(Metadata metadata) {
         if (isReactorArtifact(metadata)) {
-            return relativize(overlay.getPathForLocalMetadata(metadata));
+            String path = relativize(overlay.getPathForLocalMetadata(metadata));
+            // installer merges metadata in place
+            return isStaging() ? path + STAGING_SUFFIX : path;
         } else {
             return local.getPathForLocalMetadata(metadata);
         }
@@ -92,8 +742,14 @@ public class IMHRepositoryManager extends AbstractProjectAware implements LocalR
 
     @Override
     public LocalArtifactResult find(RepositorySystemSession session, LocalArtifactRequest request) {
-        if (isReactorArtifact(request.getArtifact())) {
-            return overlay.find(session, request);
+        Artifact artifact = request.getArtifact();
+        if (isReactorArtifact(artifact)) {
+            accessed(artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion());
+            awaitWrites(artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion());
+            if (catalog == null) {
+                return overlay.find(session, request);
+            }
+            return findInCatalog(session, request);
         } else {
             return local.find(session, request);
         }
@@ -101,8 +757,15 @@ public class IMHRepositoryManager extends AbstractProjectAware implements LocalR
 
     @Override
     public void add(RepositorySystemSession session, LocalArtifactRegistration request) {
-        if (isReactorArtifact(request.getArtifact())) {
-            overlay.add(session, request);
+        Artifact artifact = request.getArtifact();
+        if (isReactorArtifact(artifact)) {
+            accessed(artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion());
+            register(artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion(), () -> {
+                overlay.add(session, request);
+                if (catalog != null && request.getRepository() == null) {
+                    addToCatalog(overlay.getPathForLocalArtifact(artifact));
+                }
+            });
         } else {
             local.add(session, request);
         }
@@ -110,7 +773,10 @@ public class IMHRepositoryManager extends AbstractProjectAware implements LocalR
 
     @Override
     public LocalMetadataResult find(RepositorySystemSession session, LocalMetadataRequest request) {
-        if (isReactorArtifact(request.getMetadata())) {
+        Metadata metadata = request.getMetadata();
+        if (isReactorArtifact(metadata)) {
+            accessed(metadata.getGroupId(), metadata.getArtifactId(), metadata.getVersion());
+            awaitWrites(metadata.getGroupId(), metadata.getArtifactId(), metadata.getVersion());
             return overlay.find(session, request);
         } else {
             return local.find(session, request);
@@ -119,8 +785,10 @@ public class IMHRepositoryManager extends AbstractProjectAware implements LocalR
 
     @Override
     public void add(RepositorySystemSession session, LocalMetadataRegistration request) {
-        if (isReactorArtifact(request.getMetadata())) {
-            overlay.add(session, request);
+        Metadata metadata = request.getMetadata();
+        if (isReactorArtifact(metadata)) {
+            accessed(metadata.getGroupId(), metadata.getArtifactId(), metadata.getVersion());
+            register(metadata.getGroupId(), metadata.getArtifactId(), metadata.getVersion(), () -> overlay.add(session, request));
         } else {
             local.add(session, request);
         }
@@ -22,13 +22,13 @@ package tel.panfilov.maven.extensions.imh;
 
 import org.apache.maven.RepositoryUtils;
 import org.apache.maven.execution.MavenExecutionRequest;
-import org.apache.maven.model.Build;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.ProjectBuildingRequest;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.logging.Logger;
 import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.repository.WorkspaceReader;
 import org.eclipse.aether.repository.WorkspaceRepository;
 import org.eclipse.aether.util.StringUtils;
@@ -40,11 +40,15 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Component(role = IMHWorkspaceReader.class, hint = "imh")
@@ -52,6 +56,22 @@ public class IMHWorkspaceReader extends AbstractProjectAware implements Workspac
 
     public static final String DIRECTORY_FALLBACK_ENABLED_FLAG = "imh.directoryfallback";
 
+    public static final String DIRECTORY_FALLBACK_JAR = "jar";
+
+    public static final String STALENESS_MODE_PROPERTY = "imh.staleness";
+
+    public static final String STALENESS_MODE_MTIME = "mtime";
+
+    public static final String STALENESS_MODE_INDEX = "index";
+
+    public static final String STALENESS_MODE_DIGEST = "digest";
+
+    public static final String SCANNER_THREADS_PROPERTY = "imh.scanner.threads";
+
+    public static final String SCANNER_THRESHOLD_PROPERTY = "imh.scanner.threshold";
+
+    public static final int DEFAULT_SCANNER_THRESHOLD = 1000;
+
     private final WorkspaceRepository repository = new WorkspaceRepository();
 
     @Requirement
@@ -59,10 +79,232 @@ public class IMHWorkspaceReader extends AbstractProjectAware implements Workspac
 
     private MavenExecutionRequest mavenExecutionRequest;
 
+    private StalenessIndex stalenessIndex;
+
+    private File workDirectory;
+
+    private final DirectoryJarBuilder directoryJarBuilder = new DirectoryJarBuilder();
+
+    private volatile OutputScanner outputScanner;
+
+    private final Map<ReactorModule, Map<String, Optional<File>>> lookupCache = new ConcurrentHashMap<>();
+
+    private final Set<File> packagedArtifacts = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Output directories of modules mojos have been executed in during the current build, files of those
+     * may have been rewritten in place
+     */
+    private final Set<Path> writtenDirectories = ConcurrentHashMap.newKeySet();
+
+    private final Object graphLock = new Object();
+
+    private volatile ReactorGraph graph;
+
+    /**
+     * Whether modules have been added or their dependencies have changed since graph was built
+     */
+    private volatile boolean graphOutdated;
+
     public void setMavenExecutionRequest(MavenExecutionRequest mavenExecutionRequest) {
         this.mavenExecutionRequest = mavenExecutionRequest;
     }
 
+    @Override
+    public void setRootProject(ReactorSnapshot reactor) {
+        super.setRootProject(reactor);
+        workDirectory = ReactorSnapshot.getWorkDirectory(reactor.getRoot().getPomFile());
+        File indexFile = new File(workDirectory, "staleness.idx");
+        // index validates its entries against directory modification times, so it is safe to carry it over
+        if (stalenessIndex == null || !stalenessIndex.getFile().equals(indexFile)) {
+            stalenessIndex = new StalenessIndex(indexFile);
+        }
+        graphOutdated = true;
+    }
+
+    @Override
+    public void reset(boolean retainRoot) {
+        super.reset(retainRoot);
+        lookupCache.clear();
+        packagedArtifacts.clear();
+        writtenDirectories.clear();
+        synchronized (graphLock) {
+            graph = null;
+            graphOutdated = false;
+        }
+        if (!retainRoot) {
+            stalenessIndex = null;
+            workDirectory = null;
+        }
+    }
+
+    @Override
+    protected ReactorModule addModule(ReactorModule module) {
+        ReactorModule previous = super.addModule(module);
+        if (previous != null) {
+            lookupCache.remove(previous);
+        }
+        if (previous == null || !previous.getDependencies().equals(module.getDependencies())) {
+            graphOutdated = true;
+        }
+        return previous;
+    }
+
+    /**
+     * Invalidates cached lookups for the given module, supposed to be called when mojo
+     * execution in that module has finished
+     *
+     * @param project reactor module
+     */
+    public void projectChanged(MavenProject project) {
+        ReactorModule module = ReactorModule.of(project);
+        if (projects.contains(module.getGroupId(), module.getArtifactId(), module.getVersion())) {
+            // descriptor captures artifacts, so it gets replaced with the up-to-date one
+            addModule(module);
+        }
+        ReactorGraph current = getGraph();
+        if (current != null) {
+            current.invalidate(module.getKey());
+        }
+        writtenDirectories.add(Paths.get(module.getOutputDirectory()).toAbsolutePath());
+        writtenDirectories.add(Paths.get(module.getTestOutputDirectory()).toAbsolutePath());
+        long buildStartTime = getBuildStartTime();
+        boolean digest = STALENESS_MODE_DIGEST.equals(getStalenessMode(module));
+        Stream.concat(Stream.of(project.getArtifact()), project.getAttachedArtifacts().stream())
+                .filter(Objects::nonNull)
+                .filter(a -> a.getFile() != null)
+                .forEach(a -> {
+                    File file = a.getFile();
+                    if (buildStartTime > 0 && isArtifactFile(file) && file.lastModified() > buildStartTime) {
+                        packagedArtifacts.add(file);
+                        if (digest) {
+                            writeDigestManifest(project, RepositoryUtils.toArtifact(a));
+                        }
+                    } else {
+                        packagedArtifacts.remove(file);
+                    }
+                });
+    }
+
+    protected void writeDigestManifest(MavenProject project, Artifact artifact) {
+        Path directory;
+        if (isTestArtifact(artifact)) {
+            directory = Paths.get(project.getBuild().getTestOutputDirectory());
+        } else if (StringUtils.isEmpty(artifact.getClassifier())) {
+            directory = Paths.get(project.getBuild().getOutputDirectory());
+        } else {
+            return;
+        }
+
+        File packaged = artifact.getFile();
+        File manifestFile = DigestManifest.getManifestFile(packaged);
+        if (!Files.isDirectory(directory) || manifestFile.lastModified() >= packaged.lastModified()) {
+            return;
+        }
+
+        try {
+            DigestManifest.create(directory).write(manifestFile);
+        } catch (IOException ex) {
+            logger.warn("[IMH] Failed to write digest manifest " + manifestFile, ex);
+        }
+    }
+
+    public void sessionEnded() {
+        reportRebuildSet();
+        saveStalenessIndex();
+        if (outputScanner != null) {
+            outputScanner.shutdown();
+            outputScanner = null;
+        }
+    }
+
+    /**
+     * @return graph of reactor modules, rebuilt if modules have been added since it was built,
+     * null if root project has not been set
+     */
+    protected ReactorGraph getGraph() {
+        if (graphOutdated) {
+            synchronized (graphLock) {
+                if (graphOutdated) {
+                    graphOutdated = false;
+                    ReactorGraph current = graph;
+                    graph = current == null
+                            ? new ReactorGraph(projects.values(), this::isSelfStale)
+                            : current.rebuild(projects.values());
+                }
+            }
+        }
+        return graph;
+    }
+
+    protected void reportRebuildSet() {
+        ReactorGraph current = getGraph();
+        if (current == null) {
+            return;
+        }
+        List<ReactorModule> modules = current.getRebuildSet();
+        if (modules.isEmpty()) {
+            return;
+        }
+        logger.info("[IMH] packaged artifacts of some reactor modules are stale, consider rebuilding: -pl "
+                + modules.stream().map(m -> ":" + m.getArtifactId()).collect(Collectors.joining(",")));
+    }
+
+    /**
+     * Checks whether packaged artifacts of the module the given artifact belongs to and of all reactor
+     * modules it depends on are up-to-date, once evaluated state of module is kept till it gets rebuilt
+     *
+     * @param artifact reactor artifact
+     * @return false if module or any of its upstream modules is stale, true otherwise
+     */
+    public boolean isFresh(Artifact artifact) {
+        ReactorModule module = getModule(artifact);
+        ReactorGraph current = getGraph();
+        return module == null || current == null || !current.isStale(module.getKey());
+    }
+
+    protected boolean isSelfStale(ReactorModule module) {
+        String extension = getMainExtension(module);
+        if (extension == null) {
+            return false;
+        }
+        File packaged = new File(module.getDirectory(), module.getFinalName() + '.' + extension);
+        if (!isArtifactFile(packaged)) {
+            return false;
+        }
+        Artifact artifact = new DefaultArtifact(module.getGroupId(), module.getArtifactId(), "", extension, module.getVersion());
+        return !isActual(packaged, artifact, module);
+    }
+
+    protected String getMainExtension(ReactorModule module) {
+        if (module.getExtension() != null) {
+            return "pom".equals(module.getExtension()) ? null : module.getExtension();
+        }
+        String packaging = module.getPackaging();
+        if (packaging == null || "pom".equals(packaging)) {
+            return null;
+        }
+        switch (packaging) {
+            case "war":
+            case "ear":
+            case "rar":
+                return packaging;
+            default:
+                return "jar";
+        }
+    }
+
+    protected void saveStalenessIndex() {
+        if (stalenessIndex == null) {
+            return;
+        }
+        try {
+            stalenessIndex.save();
+        } catch (IOException ex) {
+            logger.warn("[IMH] Failed to save staleness index " + stalenessIndex.getFile(), ex);
+        }
+    }
+
     @Override
     public WorkspaceRepository getRepository() {
         return repository;
@@ -70,6 +312,25 @@ public class IMHWorkspaceReader extends AbstractProjectAware implements Workspac
 
     @Override
     public File findArtifact(Artifact artifact) {
+        ReactorModule module = getModule(artifact);
+        if (module == null) {
+            return null;
+        }
+        Map<String, Optional<File>> projectCache = lookupCache.computeIfAbsent(module, k -> new ConcurrentHashMap<>());
+        String lookupKey = getLookupKey(artifact);
+        Optional<File> file = projectCache.get(lookupKey);
+        if (file == null) {
+            file = Optional.ofNullable(lookupArtifact(artifact));
+            projectCache.put(lookupKey, file);
+        }
+        return file.orElse(null);
+    }
+
+    protected String getLookupKey(Artifact artifact) {
+        return artifact.getExtension() + ':' + artifact.getClassifier() + ':' + artifact.getProperty("type", "");
+    }
+
+    protected File lookupArtifact(Artifact artifact) {
         if ("pom".equals(artifact.getExtension())) {
             return getPom(artifact);
         }
@@ -77,42 +338,50 @@ public class IMHWorkspaceReader extends AbstractProjectAware implements Workspac
     }
 
     protected File getPom(Artifact artifact) {
-        return Optional.of(getProjectId(artifact))
-                .map(projectMap::get)
-                .map(MavenProject::getFile)
+        return Optional.ofNullable(getModule(artifact))
+                .map(ReactorModule::getPomFile)
                 .filter(File::exists)
                 .orElse(null);
     }
 
     protected File getArtifact(Artifact artifact) {
-        MavenProject project = projectMap.get(getProjectId(artifact));
-        if (project == null) {
+        ReactorModule module = getModule(artifact);
+        if (module == null) {
             return null;
         }
 
-        File file = findProjectArtifact(project, artifact);
+        File file = findProjectArtifact(module, artifact);
         if (file != null) {
             return file;
         }
 
-        Build build = project.getBuild();
         // javadoc promises it is  ${artifactId}-${version}
-        StringBuilder name = new StringBuilder(build.getFinalName());
+        StringBuilder name = new StringBuilder(module.getFinalName());
         if (!StringUtils.isEmpty(artifact.getClassifier())) {
             name.append('-').append(artifact.getClassifier());
         }
         name.append('.').append(artifact.getExtension());
-        file = new File(build.getDirectory(), name.toString());
-        if (isActual(file, artifact, project)) {
+        file = new File(module.getDirectory(), name.toString());
+        if (isUpToDate(file, artifact, module)) {
+            if (logger.isDebugEnabled() && !isFresh(artifact)) {
+                logger.debug("[IMH] File '" + file + "' is up-to-date, however it depends on stale reactor modules");
+            }
             return file;
         }
 
-        if (isDirectoryFallbackEnabled(project)) {
+        if (isDirectoryFallbackEnabled(module)) {
             Path directory;
             if (isTestArtifact(artifact)) {
-                directory = Paths.get(build.getTestOutputDirectory());
+                directory = Paths.get(module.getTestOutputDirectory());
             } else {
-                directory = Paths.get(build.getOutputDirectory());
+                directory = Paths.get(module.getOutputDirectory());
+            }
+
+            if (isJarFallbackEnabled(module) && "jar".equals(artifact.getExtension())) {
+                File jar = getDirectoryJar(directory, artifact);
+                if (jar != null) {
+                    return jar;
+                }
             }
 
             return directory.toFile();
@@ -121,81 +390,191 @@ public class IMHWorkspaceReader extends AbstractProjectAware implements Workspac
         return null;
     }
 
+    protected File getDirectoryJar(Path directory, Artifact artifact) {
+        if (workDirectory == null || !Files.isDirectory(directory)) {
+            return null;
+        }
+        StringBuilder name = new StringBuilder(artifact.getArtifactId()).append('-').append(artifact.getVersion());
+        if (!StringUtils.isEmpty(artifact.getClassifier())) {
+            name.append('-').append(artifact.getClassifier());
+        }
+        name.append(".jar");
+        File jar = new File(new File(new File(workDirectory, "jars"), artifact.getGroupId()), name.toString());
+        try {
+            if (directoryJarBuilder.build(directory, jar)) {
+                logger.debug("[IMH] Materialized " + directory + " as " + jar);
+            }
+            return jar;
+        } catch (IOException ex) {
+            logger.warn("[IMH] Failed to materialize " + directory + " as jar, falling back to directory", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Main artifact of module is checked via reactor graph, which remembers own state of module, so output
+     * directory gets checked once no matter whether the module is looked up or its downstream modules are
+     *
+     * @param packaged packaged artifact
+     * @param artifact reactor artifact
+     * @param module   reactor module
+     * @return whether packaged artifact is up-to-date
+     */
+    protected boolean isUpToDate(File packaged, Artifact artifact, ReactorModule module) {
+        ReactorGraph current = getGraph();
+        if (current == null || !current.contains(module.getKey()) || !isMainArtifact(artifact, module)) {
+            return isActual(packaged, artifact, module);
+        }
+        return isArtifactFile(packaged) && !current.isSelfStale(module.getKey());
+    }
+
+    protected boolean isMainArtifact(Artifact artifact, ReactorModule module) {
+        return StringUtils.isEmpty(artifact.getClassifier()) && artifact.getExtension().equals(getMainExtension(module));
+    }
+
     protected boolean isArtifactFile(File file) {
         return file != null && file.exists() && file.isFile();
     }
 
-    protected boolean isActual(File packaged, Artifact artifact, MavenProject project) {
+    protected boolean isActual(File packaged, Artifact artifact, ReactorModule module) {
+        if (packagedArtifacts.contains(packaged)) {
+            return true;
+        }
+
         if (!isArtifactFile(packaged)) {
             return false;
         }
 
-        Build build = project.getBuild();
         Path directory;
         if (isTestArtifact(artifact)) {
-            directory = Paths.get(build.getTestOutputDirectory());
+            directory = Paths.get(module.getTestOutputDirectory());
         } else {
-            directory = Paths.get(build.getOutputDirectory());
+            directory = Paths.get(module.getOutputDirectory());
         }
 
         if (Files.notExists(directory) || !Files.isDirectory(directory)) {
             return true;
         }
 
-        long buildStartTime = Optional.ofNullable(mavenExecutionRequest)
-                .map(MavenExecutionRequest::getProjectBuildingRequest)
-                .map(ProjectBuildingRequest::getBuildStartTime)
-                .map(Date::getTime)
-                .orElse(-1L);
+        long buildStartTime = getBuildStartTime();
 
-        try (Stream<Path> outputFiles = Files.walk(directory)) {
+        try {
             long artifactTime = Files.getLastModifiedTime(packaged.toPath()).toMillis();
             if (buildStartTime > 0 && artifactTime > buildStartTime) {
                 return true;
             }
 
-            Iterator<Path> iterator = outputFiles.iterator();
-            while (iterator.hasNext()) {
-                Path outputFile = iterator.next();
-
-                if (Files.isDirectory(outputFile)) {
-                    continue;
-                }
+            String mode = getStalenessMode(module);
+            if (STALENESS_MODE_DIGEST.equals(mode)) {
+                return isActualByDigest(packaged, directory, artifactTime);
+            }
 
-                long outputFileLastModified = Files.getLastModifiedTime(outputFile).toMillis();
-                if (outputFileLastModified > artifactTime) {
-                    logger.debug("[IMH] File '" + packaged + "' seems to be stale, found newer file in build directory: " + outputFile);
-                    return false;
-                }
+            if (STALENESS_MODE_INDEX.equals(mode) && stalenessIndex != null) {
+                return isActualByIndex(packaged, directory, artifactTime);
             }
 
-            return true;
+            return isActualByScan(packaged, directory, artifactTime);
         } catch (IOException e) {
             logger.warn("[IMH] Failed to check whether the packaged artifact is up-to-date, assuming it is", e);
             return true;
         }
     }
 
+    protected long getBuildStartTime() {
+        return Optional.ofNullable(mavenExecutionRequest)
+                .map(MavenExecutionRequest::getProjectBuildingRequest)
+                .map(ProjectBuildingRequest::getBuildStartTime)
+                .map(Date::getTime)
+                .orElse(-1L);
+    }
+
+    protected boolean isActualByScan(File packaged, Path directory, long artifactTime) throws IOException {
+        Path outputFile = getOutputScanner().findNewer(directory, artifactTime);
+        if (outputFile != null) {
+            logger.debug("[IMH] File '" + packaged + "' seems to be stale, found newer file in build directory: " + outputFile);
+            return false;
+        }
+        return true;
+    }
+
+    protected OutputScanner getOutputScanner() {
+        OutputScanner scanner = outputScanner;
+        if (scanner == null) {
+            synchronized (this) {
+                scanner = outputScanner;
+                if (scanner == null) {
+                    int threads = getIntProperty(SCANNER_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+                    int threshold = getIntProperty(SCANNER_THRESHOLD_PROPERTY, DEFAULT_SCANNER_THRESHOLD);
+                    scanner = new OutputScanner(threads, threshold);
+                    outputScanner = scanner;
+                }
+            }
+        }
+        return scanner;
+    }
+
+    protected int getIntProperty(String name, int defaultValue) {
+        if (mavenExecutionRequest == null) {
+            return defaultValue;
+        }
+        String value = mavenExecutionRequest.getUserProperties().getProperty(name);
+        if (StringUtils.isEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            logger.warn("[IMH] Invalid value of " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    protected boolean isActualByDigest(File packaged, Path directory, long artifactTime) throws IOException {
+        File manifestFile = DigestManifest.getManifestFile(packaged);
+        DigestManifest manifest = null;
+        if (manifestFile.lastModified() >= artifactTime) {
+            manifest = DigestManifest.read(manifestFile);
+        }
+        if (manifest == null) {
+            logger.debug("[IMH] Digest manifest for '" + packaged + "' is missing or outdated, checking modification times");
+            return isActualByScan(packaged, directory, artifactTime);
+        }
+
+        String changed = manifest.findChanged(directory);
+        if (changed != null) {
+            logger.debug("[IMH] File '" + packaged + "' seems to be stale, content of file in build directory has been changed: " + changed);
+            return false;
+        }
+
+        if (manifest.isRefreshed()) {
+            manifest.write(manifestFile);
+        }
+        return true;
+    }
+
+    protected boolean isActualByIndex(File packaged, Path directory, long artifactTime) throws IOException {
+        StalenessIndex.Entry entry = stalenessIndex.getEntry(directory, writtenDirectories.contains(directory.toAbsolutePath()));
+        if (entry.getNewest() > artifactTime) {
+            logger.debug("[IMH] File '" + packaged + "' seems to be stale, staleness index reports newer files in build directory: " + directory);
+            return false;
+        }
+        return true;
+    }
+
     @Override
     public List<String> findVersions(Artifact artifact) {
-        MavenProject project = projectMap.get(getProjectId(artifact));
-        if (project != null) {
-            return Collections.singletonList(project.getVersion());
+        ReactorModule module = getModule(artifact);
+        if (module != null) {
+            return Collections.singletonList(module.getVersion());
         }
         return Collections.emptyList();
     }
 
-    protected File findProjectArtifact(MavenProject project, Artifact requested) {
-        String requestedId = getArtifactId(requested);
-        return Stream.concat(Stream.of(project.getArtifact()), project.getAttachedArtifacts().stream())
-                .filter(Objects::nonNull)
-                .map(RepositoryUtils::toArtifact)
-                .filter(a -> requestedId.equals(getArtifactId(a)))
-                .filter(a -> Objects.equals(requested.getVersion(), a.getVersion()))
+    protected File findProjectArtifact(ReactorModule module, Artifact requested) {
+        return Optional.ofNullable(module.getArtifacts())
+                .map(index -> index.get(requested))
                 .map(Artifact::getFile)
-                .filter(Objects::nonNull)
                 .filter(File::exists)
-                .findFirst()
                 .orElse(null);
     }
 
@@ -204,9 +583,28 @@ public class IMHWorkspaceReader extends AbstractProjectAware implements Workspac
                 || ("jar".equals(artifact.getExtension()) && "tests".equals(artifact.getClassifier()));
     }
 
-    protected boolean isDirectoryFallbackEnabled(MavenProject project) {
-        Properties properties = project.getProperties();
-        if ("true".equalsIgnoreCase(properties.getProperty(DIRECTORY_FALLBACK_ENABLED_FLAG))) {
+    protected String getStalenessMode(ReactorModule module) {
+        String mode = module.getProperty(STALENESS_MODE_PROPERTY);
+        if (mavenExecutionRequest != null) {
+            mode = mavenExecutionRequest.getUserProperties().getProperty(STALENESS_MODE_PROPERTY, mode);
+        }
+        if (StringUtils.isEmpty(mode)) {
+            return STALENESS_MODE_MTIME;
+        }
+        return mode.trim().toLowerCase(Locale.ROOT);
+    }
+
+    protected boolean isDirectoryFallbackEnabled(ReactorModule module) {
+        return hasPropertyValue(module, DIRECTORY_FALLBACK_ENABLED_FLAG, "true")
+                || hasPropertyValue(module, DIRECTORY_FALLBACK_ENABLED_FLAG, DIRECTORY_FALLBACK_JAR);
+    }
+
+    protected boolean isJarFallbackEnabled(ReactorModule module) {
+        return hasPropertyValue(module, DIRECTORY_FALLBACK_ENABLED_FLAG, DIRECTORY_FALLBACK_JAR);
+    }
+
+    protected boolean hasPropertyValue(ReactorModule module, String name, String value) {
+        if (value.equalsIgnoreCase(module.getProperty(name))) {
             return true;
         }
 
@@ -214,8 +612,8 @@ public class IMHWorkspaceReader extends AbstractProjectAware implements Workspac
             return false;
         }
 
-        properties = mavenExecutionRequest.getUserProperties();
-        return "true".equalsIgnoreCase(properties.getProperty(DIRECTORY_FALLBACK_ENABLED_FLAG));
+        Properties properties = mavenExecutionRequest.getUserProperties();
+        return value.equalsIgnoreCase(properties.getProperty(name));
     }
 
 
@@ -0,0 +1,178 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Looks for output files modified after the given point of time.
+ * <p>
+ * Scanning starts on the calling thread, once the number of visited files exceeds the configured
+ * threshold the rest of the tree gets split across fork/join pool, the scan stops as soon as
+ * any newer file is found.
+ */
+public class OutputScanner {
+
+    private final int parallelism;
+
+    private final int threshold;
+
+    private volatile ForkJoinPool pool;
+
+    public OutputScanner(int parallelism, int threshold) {
+        this.parallelism = Math.max(1, parallelism);
+        this.threshold = Math.max(0, threshold);
+    }
+
+    /**
+     * Finds file modified after the given time
+     *
+     * @param directory output directory
+     * @param time      modification time to compare with
+     * @return newer file, null if there is no such files
+     * @throws IOException if directory can't be read
+     */
+    public Path findNewer(Path directory, long time) throws IOException {
+        AtomicReference<Path> found = new AtomicReference<>();
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.push(directory);
+        int visited = 0;
+        while (!pending.isEmpty() && (visited < threshold || parallelism == 1)) {
+            visited += scan(pending.pop(), time, found, pending::push);
+            if (found.get() != null) {
+                return found.get();
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return null;
+        }
+
+        try {
+            getPool().invoke(new ScanTask(new ArrayList<>(pending), time, found));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return found.get();
+    }
+
+    protected int scan(Path directory, long time, AtomicReference<Path> found, Consumer<Path> subdirectories) throws IOException {
+        int files = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                if (found.get() != null) {
+                    break;
+                }
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                } catch (NoSuchFileException ex) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    subdirectories.accept(child);
+                    continue;
+                }
+                files++;
+                if (attributes.lastModifiedTime().toMillis() > time) {
+                    found.compareAndSet(null, child);
+                    break;
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            // directory has been removed in the meantime
+        }
+        return files;
+    }
+
+    protected ForkJoinPool getPool() {
+        ForkJoinPool result = pool;
+        if (result == null) {
+            synchronized (this) {
+                result = pool;
+                if (result == null) {
+                    result = new ForkJoinPool(parallelism);
+                    pool = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    class ScanTask extends RecursiveAction {
+
+        private final List<Path> directories;
+
+        private final long time;
+
+        private final AtomicReference<Path> found;
+
+        ScanTask(List<Path> directories, long time, AtomicReference<Path> found) {
+            this.directories = directories;
+            this.time = time;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (found.get() != null) {
+                return;
+            }
+            List<ScanTask> subtasks = new ArrayList<>();
+            if (directories.size() > 1) {
+                directories.forEach(d -> subtasks.add(new ScanTask(Collections.singletonList(d), time, found)));
+            } else {
+                try {
+                    scan(directories.get(0), time, found, d -> subtasks.add(new ScanTask(Collections.singletonList(d), time, found)));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+            if (found.get() == null && !subtasks.isEmpty()) {
+                invokeAll(subtasks);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,390 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Catalog of artifacts installed into overlay repository, allows to answer lookups with a single
+ * file status check instead of the resolution performed by repository manager.
+ * <p>
+ * Catalog file consists of header (magic, version, number of entries), table of entry offsets sorted
+ * by path and entries (path length, UTF-8 path, size, modification time); it is memory mapped
+ * and probed via binary search. Changes made during session are kept in memory and merged on save.
+ * Hits are checked against the file system, so files removed or replaced behind the catalog's back
+ * (e.g. overlay repository has been cleaned) are not reported.
+ */
+public class OverlayCatalog {
+
+    /**
+     * Name of catalog file within overlay repository
+     */
+    public static final String CATALOG_FILE = ".imh-catalog";
+
+    private static final int MAGIC = 0x494D4843;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+
+    private final Path file;
+
+    private final Path overlay;
+
+    private final ReadWriteLock mappingLock = new ReentrantReadWriteLock();
+
+    private final Map<String, Entry> added = new ConcurrentHashMap<>();
+
+    private final Set<String> removed = ConcurrentHashMap.newKeySet();
+
+    private volatile ByteBuffer mapped;
+
+    private Object fileKey;
+
+    /**
+     * Loads catalog of the given overlay repository, the catalog is empty if it has not been saved yet
+     *
+     * @param overlay overlay repository directory
+     */
+    public OverlayCatalog(Path overlay) {
+        this.overlay = overlay;
+        this.file = overlay.resolve(CATALOG_FILE);
+        load();
+    }
+
+    protected void load() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.limit() < HEADER_SIZE + 4L * buffer.getInt(8)) {
+                return;
+            }
+            mapped = buffer;
+            fileKey = getFileKey();
+        } catch (IOException | RuntimeException ex) {
+            mapped = null;
+        }
+    }
+
+    /**
+     * Looks up the artifact by its path relative to overlay repository, entries whose file has disappeared
+     * or has been changed since it was recorded are dropped
+     *
+     * @param path relative path
+     * @return catalog entry, null if artifact is unknown
+     */
+    public Entry find(String path) {
+        Entry entry = lookup(path);
+        if (entry != null && !isActual(path, entry)) {
+            remove(path);
+            return null;
+        }
+        return entry;
+    }
+
+    protected Entry lookup(String path) {
+        Entry entry = added.get(path);
+        if (entry != null) {
+            return entry;
+        }
+        if (mapped == null || removed.contains(path)) {
+            return null;
+        }
+        mappingLock.readLock().lock();
+        try {
+            ByteBuffer current = mapped;
+            return current == null ? null : search(current, path.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            mappingLock.readLock().unlock();
+        }
+    }
+
+    protected boolean isActual(String path, Entry entry) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(overlay.resolve(path), BasicFileAttributes.class);
+        } catch (IOException | SecurityException ex) {
+            return false;
+        }
+        if (!attributes.isRegularFile()) {
+            return false;
+        }
+        return entry.size == 0 && entry.modified == 0
+                || attributes.size() == entry.size && attributes.lastModifiedTime().toMillis() == entry.modified;
+    }
+
+    /**
+     * Records installed artifact
+     *
+     * @param path     path relative to overlay repository
+     * @param size     file size
+     * @param modified file modification time
+     */
+    public void add(String path, long size, long modified) {
+        removed.remove(path);
+        added.put(path, new Entry(size, modified));
+    }
+
+    /**
+     * Forgets artifact, e.g. when it has been evicted from overlay repository
+     *
+     * @param path path relative to overlay repository
+     */
+    public void remove(String path) {
+        added.remove(path);
+        removed.add(path);
+    }
+
+    /**
+     * Writes merged catalog, entries of the loaded catalog are dropped if the catalog file has disappeared
+     * in the meantime, e.g. overlay repository has been cleaned
+     *
+     * @throws IOException if catalog can't be written
+     */
+    public synchronized void save() throws IOException {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        Map<String, Entry> savedAdded = new HashMap<>(added);
+        Set<String> savedRemoved = new HashSet<>(removed);
+        Map<byte[], Entry> entries = new TreeMap<>(OverlayCatalog::compare);
+        mappingLock.readLock().lock();
+        try {
+            ByteBuffer current = mapped;
+            if (current != null && fileKey != null && fileKey.equals(getFileKey())) {
+                int count = current.getInt(8);
+                for (int i = 0; i < count; i++) {
+                    int offset = current.getInt(HEADER_SIZE + 4 * i);
+                    byte[] path = new byte[current.getShort(offset) & 0xFFFF];
+                    for (int j = 0; j < path.length; j++) {
+                        path[j] = current.get(offset + 2 + j);
+                    }
+                    if (!savedRemoved.contains(new String(path, StandardCharsets.UTF_8))) {
+                        entries.put(path, readEntry(current, offset + 2 + path.length));
+                    }
+                }
+            }
+        } finally {
+            mappingLock.readLock().unlock();
+        }
+        savedAdded.forEach((path, entry) -> entries.put(path.getBytes(StandardCharsets.UTF_8), entry));
+
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), CATALOG_FILE, ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(entries.size());
+            int offset = HEADER_SIZE + 4 * entries.size();
+            List<byte[]> paths = new ArrayList<>(entries.keySet());
+            for (byte[] path : paths) {
+                output.writeInt(offset);
+                offset += 2 + path.length + 16;
+            }
+            for (byte[] path : paths) {
+                Entry entry = entries.get(path);
+                output.writeShort(path.length);
+                output.write(path);
+                output.writeLong(entry.size);
+                output.writeLong(entry.modified);
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+
+        mappingLock.writeLock().lock();
+        try {
+            // mapped file can't be replaced on Windows
+            unmap();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            savedAdded.forEach(added::remove);
+            removed.removeAll(savedRemoved);
+            load();
+        } finally {
+            mappingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Releases memory mapping of catalog file, entries recorded since the last save are retained
+     */
+    public void close() {
+        mappingLock.writeLock().lock();
+        try {
+            unmap();
+        } finally {
+            mappingLock.writeLock().unlock();
+        }
+    }
+
+    protected void unmap() {
+        ByteBuffer current = mapped;
+        mapped = null;
+        fileKey = null;
+        if (current != null) {
+            release(current);
+        }
+    }
+
+    /**
+     * Unmaps buffer without waiting for it to be garbage collected, buffer must not be accessed afterwards
+     *
+     * @param buffer mapped buffer
+     */
+    protected static void release(ByteBuffer buffer) {
+        try {
+            // Java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(field.get(null), buffer);
+            return;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // fall back to Java 8 cleaner
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method clean = cleaner.getClass().getMethod("clean");
+                clean.setAccessible(true);
+                clean.invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // mapping is released once buffer gets garbage collected
+        }
+    }
+
+    protected Object getFileKey() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            Object key = attributes.fileKey();
+            return key != null ? key : attributes.creationTime();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    protected static Entry search(ByteBuffer buffer, byte[] path) {
+        int low = 0;
+        int high = buffer.getInt(8) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = buffer.getInt(HEADER_SIZE + 4 * middle);
+            int cmp = compare(buffer, offset, path);
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return readEntry(buffer, offset + 2 + path.length);
+            }
+        }
+        return null;
+    }
+
+    protected static Entry readEntry(ByteBuffer buffer, int offset) {
+        return new Entry(buffer.getLong(offset), buffer.getLong(offset + 8));
+    }
+
+    protected static int compare(ByteBuffer buffer, int offset, byte[] path) {
+        int length = buffer.getShort(offset) & 0xFFFF;
+        int common = Math.min(length, path.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (buffer.get(offset + 2 + i) & 0xFF) - (path[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - path.length;
+    }
+
+    protected static int compare(byte[] first, byte[] second) {
+        int common = Math.min(first.length, second.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return first.length - second.length;
+    }
+
+    /**
+     * Recorded state of installed artifact
+     */
+    public static class Entry {
+
+        private final long size;
+
+        private final long modified;
+
+        Entry(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * @return file size, 0 if unknown
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return file modification time in milliseconds, 0 if unknown
+         */
+        public long getModified() {
+            return modified;
+        }
+
+    }
+
+}
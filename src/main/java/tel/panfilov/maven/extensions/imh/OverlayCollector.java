@@ -0,0 +1,314 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Tracks access times of coordinates in overlay repository and evicts least recently used coordinates
+ * which do not belong to the current reactor.
+ */
+public class OverlayCollector {
+
+    public static final String ACCESS_FILE = ".imh-access.properties";
+
+    private final Path overlay;
+
+    private final OverlayLocks locks;
+
+    private final Map<String, Long> accessed = new ConcurrentHashMap<>();
+
+    public OverlayCollector(Path overlay, OverlayLocks locks) {
+        this.overlay = overlay;
+        this.locks = locks;
+    }
+
+    /**
+     * Records access to the given coordinates
+     *
+     * @param groupId    groupId
+     * @param artifactId artifactId
+     * @param version    base version
+     */
+    public void accessed(String groupId, String artifactId, String version) {
+        accessed.put(groupId + ':' + artifactId + ':' + version, System.currentTimeMillis());
+    }
+
+    /**
+     * Merges access times recorded during the session into access file
+     *
+     * @throws IOException if access file can't be written
+     */
+    public void saveAccessTimes() throws IOException {
+        if (accessed.isEmpty()) {
+            return;
+        }
+        storeAccessTimes(loadAccessTimes());
+    }
+
+    /**
+     * Evicts coordinates which are not retained, least recently used first, until overlay repository
+     * fits into the given size
+     *
+     * @param retained coordinates which must not be evicted
+     * @param maxSize  size limit in bytes, negative value means evict all coordinates which are not retained
+     * @param evicted  receives evicted coordinates and relative paths of their removed files
+     * @return number of evicted bytes
+     * @throws IOException if overlay repository can't be read
+     */
+    public long collect(Predicate<Coordinate> retained, long maxSize, BiConsumer<Coordinate, String> evicted) throws IOException {
+        if (!Files.isDirectory(overlay)) {
+            return 0;
+        }
+        Properties accessTimes = loadAccessTimes();
+        List<Coordinate> coordinates = scan();
+        long total = coordinates.stream().mapToLong(c -> c.size).sum();
+        long freed = 0;
+        if (maxSize < 0 || total > maxSize) {
+            coordinates.forEach(c -> c.accessed = Math.max(c.accessed, parseTime(accessTimes.getProperty(c.getKey()))));
+            coordinates.sort(Comparator.comparingLong(c -> c.accessed));
+            for (Coordinate coordinate : coordinates) {
+                if (maxSize >= 0 && total - freed <= maxSize) {
+                    break;
+                }
+                if (retained.test(coordinate)) {
+                    continue;
+                }
+                locks.lock(coordinate.groupId, coordinate.artifactId, coordinate.version);
+                try {
+                    delete(coordinate, evicted);
+                } finally {
+                    locks.unlock(coordinate.groupId, coordinate.artifactId, coordinate.version);
+                }
+                accessTimes.remove(coordinate.getKey());
+                freed += coordinate.size;
+            }
+        }
+        storeAccessTimes(accessTimes);
+        return freed;
+    }
+
+    protected Properties loadAccessTimes() throws IOException {
+        Path file = overlay.resolve(ACCESS_FILE);
+        Properties properties = new Properties();
+        if (Files.isRegularFile(file)) {
+            try (InputStream input = Files.newInputStream(file)) {
+                properties.load(input);
+            }
+        }
+        accessed.forEach((key, time) -> {
+            if (time > parseTime(properties.getProperty(key))) {
+                properties.setProperty(key, String.valueOf(time));
+            }
+        });
+        accessed.clear();
+        return properties;
+    }
+
+    protected void storeAccessTimes(Properties properties) throws IOException {
+        Files.createDirectories(overlay);
+        Path temp = Files.createTempFile(overlay, ACCESS_FILE, ".tmp");
+        try (OutputStream output = Files.newOutputStream(temp)) {
+            properties.store(output, "IMH overlay repository access times");
+        }
+        Files.move(temp, overlay.resolve(ACCESS_FILE), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    protected List<Coordinate> scan() throws IOException {
+        List<Coordinate> result = new ArrayList<>();
+        Files.walkFileTree(overlay, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.equals(overlay)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (dir.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (overlay.relativize(dir).getNameCount() < 3) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Coordinate coordinate = toCoordinate(dir);
+                if (coordinate != null) {
+                    result.add(coordinate);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Version directory is the one containing pom file named after parent directories
+     *
+     * @param dir directory
+     * @return coordinate, null if the given directory is not a version directory
+     * @throws IOException if directory can't be read
+     */
+    protected Coordinate toCoordinate(Path dir) throws IOException {
+        String version = dir.getFileName().toString();
+        String artifactId = dir.getParent().getFileName().toString();
+        String prefix = artifactId + '-';
+        long size = 0;
+        long modified = 0;
+        boolean versionDir = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                String name = file.getFileName().toString();
+                if (attributes.isDirectory()) {
+                    continue;
+                }
+                versionDir |= name.startsWith(prefix) && name.endsWith(".pom");
+                size += attributes.size();
+                modified = Math.max(modified, attributes.lastModifiedTime().toMillis());
+            }
+        }
+        if (!versionDir) {
+            return null;
+        }
+        Path groupPath = overlay.relativize(dir.getParent().getParent());
+        StringBuilder groupId = new StringBuilder();
+        for (Path element : groupPath) {
+            if (groupId.length() > 0) {
+                groupId.append('.');
+            }
+            groupId.append(element);
+        }
+        return new Coordinate(dir, groupId.toString(), artifactId, version, size, modified);
+    }
+
+    protected void delete(Coordinate coordinate, BiConsumer<Coordinate, String> evicted) throws IOException {
+        Files.walkFileTree(coordinate.directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                evicted.accept(coordinate, overlay.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Path artifactDir = coordinate.directory.getParent();
+        if (!hasSubdirectories(artifactDir)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(artifactDir)) {
+                for (Path file : stream) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(artifactDir);
+            for (Path dir = artifactDir.getParent(); !dir.equals(overlay) && isEmpty(dir); dir = dir.getParent()) {
+                Files.delete(dir);
+            }
+        }
+    }
+
+    protected boolean isEmpty(Path dir) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            return !stream.iterator().hasNext();
+        }
+    }
+
+    protected boolean hasSubdirectories(Path dir) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            return stream.iterator().hasNext();
+        }
+    }
+
+    protected static long parseTime(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    public static class Coordinate {
+
+        private final Path directory;
+
+        private final String groupId;
+
+        private final String artifactId;
+
+        private final String version;
+
+        private final long size;
+
+        private long accessed;
+
+        Coordinate(Path directory, String groupId, String artifactId, String version, long size, long accessed) {
+            this.directory = directory;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.size = size;
+            this.accessed = accessed;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getKey() {
+            return groupId + ':' + artifactId + ':' + version;
+        }
+
+    }
+
+}
@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped per-coordinate locks guarding overlay repository against concurrent writes of threads
+ * and of other Maven invocations sharing the same overlay repository.
+ * <p>
+ * Every stripe consists of in-JVM lock and exclusive lock on the stripe file in {@value #LOCKS_DIRECTORY},
+ * coordinates falling into different stripes are written concurrently.
+ */
+public class OverlayLocks {
+
+    public static final String LOCKS_DIRECTORY = ".imh-locks";
+
+    public static final int STRIPES = 64;
+
+    private final Path directory;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public OverlayLocks(Path overlay) {
+        this.directory = overlay.resolve(LOCKS_DIRECTORY);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(directory.resolve(Integer.toString(i)));
+        }
+    }
+
+    /**
+     * Acquires lock for the given coordinates, lock is reentrant and must be released by the same thread
+     *
+     * @param groupId    groupId
+     * @param artifactId artifactId
+     * @param version    base version, may be empty for artifact level metadata
+     */
+    public void lock(String groupId, String artifactId, String version) {
+        getStripe(groupId, artifactId, version).lock();
+    }
+
+    public void unlock(String groupId, String artifactId, String version) {
+        getStripe(groupId, artifactId, version).unlock();
+    }
+
+    /**
+     * Closes lock files, supposed to be called once overlay repository is not used anymore, e.g. when
+     * session ends, since components outlive sessions in long-lived JVMs. Locks get reopened on demand.
+     */
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    protected Stripe getStripe(String groupId, String artifactId, String version) {
+        int h = groupId.hashCode();
+        h = 31 * h + artifactId.hashCode();
+        h = 31 * h + (version == null ? 0 : version.hashCode());
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    protected class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Path file;
+
+        private FileChannel channel;
+
+        private FileLock fileLock;
+
+        Stripe(Path file) {
+            this.file = file;
+        }
+
+        void lock() {
+            lock.lock();
+            if (lock.getHoldCount() > 1) {
+                return;
+            }
+            try {
+                if (channel == null || !channel.isOpen()) {
+                    Files.createDirectories(directory);
+                    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                }
+                fileLock = channel.lock();
+            } catch (IOException | UnsupportedOperationException ex) {
+                // file system does not support locking, protect against threads of this JVM only
+                fileLock = null;
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                if (lock.getHoldCount() > 1) {
+                    // the current thread holds the stripe
+                    return;
+                }
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException ex) {
+                // nothing to release
+            } finally {
+                if (lock.getHoldCount() == 1) {
+                    channel = null;
+                }
+                lock.unlock();
+            }
+        }
+
+        void unlock() {
+            if (!lock.isHeldByCurrentThread()) {
+                return;
+            }
+            try {
+                if (lock.getHoldCount() == 1 && fileLock != null) {
+                    fileLock.release();
+                }
+            } catch (IOException ex) {
+                // channel closed, lock released
+            } finally {
+                if (lock.getHoldCount() == 1) {
+                    fileLock = null;
+                }
+                lock.unlock();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,327 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Raw coordinates, parent reference and modules of pom file, read via streaming parser without
+ * building the model: no inheritance, interpolation or profile activation takes place.
+ * <p>
+ * Optionally collects (groupId, artifactId) of all dependencies, plugins and extensions mentioned
+ * anywhere in pom, including profiles and management sections.
+ */
+public class PomHeader {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private final File file;
+
+    private String groupId;
+
+    private String artifactId;
+
+    private String version;
+
+    private String packaging = "jar";
+
+    private String parentGroupId;
+
+    private String parentArtifactId;
+
+    private String parentVersion;
+
+    private String parentRelativePath;
+
+    private final List<String> modules = new ArrayList<>();
+
+    private final boolean collectReferences;
+
+    private final List<String[]> references = new ArrayList<>();
+
+    private final List<String[]> imports = new ArrayList<>();
+
+    protected PomHeader(File file, boolean collectReferences) {
+        this.file = file;
+        this.collectReferences = collectReferences;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Reads pom file
+     *
+     * @param file pom file
+     * @return pom header
+     * @throws IOException if file can't be read or parsed
+     */
+    public static PomHeader read(File file) throws IOException {
+        return read(file, false);
+    }
+
+    /**
+     * Reads pom file
+     *
+     * @param file              pom file
+     * @param collectReferences whether to collect dependencies, plugins and extensions
+     * @return pom header
+     * @throws IOException if file can't be read or parsed
+     */
+    public static PomHeader read(File file, boolean collectReferences) throws IOException {
+        PomHeader header = new PomHeader(file, collectReferences);
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+            try {
+                header.parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Failed to parse " + file, ex);
+        }
+        return header;
+    }
+
+    protected void parse(XMLStreamReader reader) throws XMLStreamException {
+        List<String> path = new ArrayList<>();
+        List<String[]> referenceStack = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                path.add(reader.getLocalName());
+                if (!collectReferences && (path.size() > 3 || path.size() == 2 && !isHeaderElement(path.get(1)))) {
+                    skipElement(reader);
+                    path.remove(path.size() - 1);
+                } else if (collectReferences && isReferenceElement(path.get(path.size() - 1))) {
+                    referenceStack.add(new String[3]);
+                }
+                text.setLength(0);
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                text.append(reader.getText());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String value = text.toString().trim();
+                String name = path.get(path.size() - 1);
+                if (collectReferences && isReferenceElement(name)) {
+                    String[] reference = referenceStack.remove(referenceStack.size() - 1);
+                    if (reference[0] == null && "plugin".equals(name)) {
+                        reference[0] = "org.apache.maven.plugins";
+                    }
+                    if (reference[1] != null) {
+                        references.add(new String[]{reference[0], reference[1]});
+                        if ("import".equals(reference[2]) && path.contains("dependencyManagement")) {
+                            imports.add(new String[]{reference[0], reference[1]});
+                        }
+                    }
+                } else if (!referenceStack.isEmpty() && isReferenceElement(path.get(path.size() - 2))) {
+                    String[] reference = referenceStack.get(referenceStack.size() - 1);
+                    if ("groupId".equals(name)) {
+                        reference[0] = value;
+                    } else if ("artifactId".equals(name)) {
+                        reference[1] = value;
+                    } else if ("scope".equals(name)) {
+                        reference[2] = value;
+                    }
+                } else {
+                    element(path, value);
+                }
+                text.setLength(0);
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+
+    protected boolean isReferenceElement(String name) {
+        return "dependency".equals(name) || "plugin".equals(name) || "extension".equals(name);
+    }
+
+    protected boolean isHeaderElement(String name) {
+        switch (name) {
+            case "groupId":
+            case "artifactId":
+            case "version":
+            case "packaging":
+            case "parent":
+            case "modules":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    protected void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    protected void element(List<String> path, String text) {
+        if (path.size() == 2) {
+            switch (path.get(1)) {
+                case "groupId":
+                    groupId = text;
+                    break;
+                case "artifactId":
+                    artifactId = text;
+                    break;
+                case "version":
+                    version = text;
+                    break;
+                case "packaging":
+                    packaging = text;
+                    break;
+                default:
+                    break;
+            }
+        } else if (path.size() == 3 && "parent".equals(path.get(1))) {
+            switch (path.get(2)) {
+                case "groupId":
+                    parentGroupId = text;
+                    break;
+                case "artifactId":
+                    parentArtifactId = text;
+                    break;
+                case "version":
+                    parentVersion = text;
+                    break;
+                case "relativePath":
+                    parentRelativePath = text;
+                    break;
+                default:
+                    break;
+            }
+        } else if (path.size() >= 3 && "module".equals(path.get(path.size() - 1))
+                && "modules".equals(path.get(path.size() - 2))
+                && ("modules".equals(path.get(1)) || "profiles".equals(path.get(1)))) {
+            // modules declared in profiles are taken regardless of profile activation
+            modules.add(text);
+        }
+    }
+
+    /**
+     * @return (groupId, artifactId) pairs of dependencies, plugins and extensions, groupId may be
+     * an expression or null
+     */
+    public List<String[]> getReferences() {
+        return references;
+    }
+
+    /**
+     * @return (groupId, artifactId) pairs of managed dependencies imported via {@code import} scope,
+     * groupId may be an expression or null
+     */
+    public List<String[]> getImports() {
+        return imports;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getGroupId() {
+        return groupId != null ? groupId : parentGroupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version != null ? version : parentVersion;
+    }
+
+    public String getPackaging() {
+        return packaging;
+    }
+
+    public boolean hasParent() {
+        return parentArtifactId != null;
+    }
+
+    public String getParentGroupId() {
+        return parentGroupId;
+    }
+
+    public String getParentArtifactId() {
+        return parentArtifactId;
+    }
+
+    public String getParentVersion() {
+        return parentVersion;
+    }
+
+    /**
+     * @return parent pom file referenced via relative path, null if relative path is empty
+     */
+    public File getParentFile() {
+        String relativePath = parentRelativePath == null ? "../pom.xml" : parentRelativePath;
+        if (relativePath.isEmpty()) {
+            return null;
+        }
+        File parent = new File(file.getParentFile(), relativePath);
+        if (parent.isDirectory()) {
+            parent = new File(parent, "pom.xml");
+        }
+        return parent;
+    }
+
+    /**
+     * @return pom files of modules
+     */
+    public List<File> getModuleFiles() {
+        if (modules.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<File> result = new ArrayList<>(modules.size());
+        for (String module : modules) {
+            File moduleFile = new File(file.getParentFile(), module);
+            if (moduleFile.isDirectory()) {
+                moduleFile = new File(moduleFile, "pom.xml");
+            }
+            result.add(moduleFile);
+        }
+        return result;
+    }
+
+}
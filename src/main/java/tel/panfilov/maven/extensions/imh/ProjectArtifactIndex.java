@@ -0,0 +1,110 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.Artifact;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Index of main and attached artifacts of reactor module by (groupId, artifactId, extension, classifier),
+ * plugins may attach several artifacts with the same key, so all of them are kept
+ */
+public class ProjectArtifactIndex {
+
+    private final Map<Key, List<Artifact>> artifacts = new HashMap<>();
+
+    public ProjectArtifactIndex(MavenProject project) {
+        add(project.getArtifact());
+        project.getAttachedArtifacts().forEach(this::add);
+    }
+
+    protected void add(org.apache.maven.artifact.Artifact artifact) {
+        if (artifact == null || artifact.getFile() == null) {
+            return;
+        }
+        Artifact converted = RepositoryUtils.toArtifact(artifact);
+        artifacts.computeIfAbsent(new Key(converted), key -> new ArrayList<>(1)).add(converted);
+    }
+
+    /**
+     * Looks up artifact matching the requested one, artifacts attached first take precedence
+     *
+     * @param requested requested artifact
+     * @return matching artifact which file exists, null if there is no such artifact
+     */
+    public Artifact get(Artifact requested) {
+        List<Artifact> candidates = artifacts.get(new Key(requested));
+        if (candidates == null) {
+            return null;
+        }
+        for (Artifact artifact : candidates) {
+            if (Objects.equals(requested.getVersion(), artifact.getVersion()) && artifact.getFile().exists()) {
+                return artifact;
+            }
+        }
+        return null;
+    }
+
+    static final class Key {
+
+        private final String groupId;
+
+        private final String artifactId;
+
+        private final String extension;
+
+        private final String classifier;
+
+        Key(Artifact artifact) {
+            this.groupId = String.valueOf(artifact.getGroupId());
+            this.artifactId = String.valueOf(artifact.getArtifactId());
+            this.extension = artifact.getExtension() == null ? "" : artifact.getExtension();
+            this.classifier = artifact.getClassifier() == null ? "" : artifact.getClassifier();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return groupId.equals(key.groupId) && artifactId.equals(key.artifactId)
+                    && extension.equals(key.extension) && classifier.equals(key.classifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(groupId, artifactId, extension, classifier);
+        }
+
+    }
+
+}
@@ -0,0 +1,262 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Module graph of root reactor read from raw poms: modules are discovered via {@code <modules>}
+ * (including those declared in profiles), edges are parent references, dependencies, plugins and
+ * extensions matched against reactor modules by groupId and artifactId.
+ * <p>
+ * Raw poms are neither interpolated nor inherited, so edges are over-approximated: groupId expressions
+ * other than project/parent groupId match any module with the same artifactId.
+ */
+public class RawReactor {
+
+    private final Map<File, PomHeader> modules;
+
+    private final Map<String, List<PomHeader>> byArtifactId = new HashMap<>();
+
+    protected RawReactor(Map<File, PomHeader> modules) {
+        this.modules = modules;
+        for (PomHeader header : modules.values()) {
+            byArtifactId.computeIfAbsent(header.getArtifactId(), k -> new ArrayList<>()).add(header);
+        }
+    }
+
+    /**
+     * Reads root pom and all its modules recursively
+     *
+     * @param rootPom root pom file
+     * @return module graph
+     * @throws IOException if any pom can't be read
+     */
+    public static RawReactor read(File rootPom) throws IOException {
+        return read(rootPom, true);
+    }
+
+    /**
+     * Reads root pom and all its modules recursively
+     *
+     * @param rootPom           root pom file
+     * @param collectReferences whether to collect dependencies, plugins and extensions of modules
+     * @return module graph
+     * @throws IOException if any pom can't be read
+     */
+    public static RawReactor read(File rootPom, boolean collectReferences) throws IOException {
+        Map<File, PomHeader> modules = new LinkedHashMap<>();
+        Deque<File> queue = new ArrayDeque<>();
+        queue.add(normalize(rootPom));
+        while (!queue.isEmpty()) {
+            File pom = queue.poll();
+            if (modules.containsKey(pom) || !pom.isFile()) {
+                continue;
+            }
+            PomHeader header = PomHeader.read(pom, collectReferences);
+            modules.put(pom, header);
+            for (File module : header.getModuleFiles()) {
+                queue.add(normalize(module));
+            }
+        }
+        return new RawReactor(modules);
+    }
+
+    protected static File normalize(File file) {
+        return file.toPath().toAbsolutePath().normalize().toFile();
+    }
+
+    public Collection<PomHeader> getModules() {
+        return modules.values();
+    }
+
+    public PomHeader getModule(File pom) {
+        return modules.get(normalize(pom));
+    }
+
+    /**
+     * @return filter of groupIds and artifactIds of modules, null if some groupId is an expression
+     */
+    public CoordinateFilter getCoordinateFilter() {
+        List<String[]> coordinates = new ArrayList<>(modules.size());
+        for (PomHeader header : modules.values()) {
+            String groupId = header.getGroupId();
+            if (groupId == null || groupId.contains("${")) {
+                return null;
+            }
+            coordinates.add(new String[]{groupId, header.getArtifactId()});
+        }
+        return CoordinateFilter.of(coordinates);
+    }
+
+    /**
+     * @param pom aggregator pom
+     * @return the given module and all modules it aggregates recursively
+     */
+    public List<PomHeader> getSubtree(File pom) {
+        PomHeader start = getModule(pom);
+        if (start == null) {
+            return Collections.emptyList();
+        }
+        Set<PomHeader> result = new LinkedHashSet<>();
+        Deque<PomHeader> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            PomHeader header = queue.poll();
+            if (!result.add(header)) {
+                continue;
+            }
+            for (File module : header.getModuleFiles()) {
+                PomHeader child = getModule(module);
+                if (child != null) {
+                    queue.add(child);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Computes reactor modules the given ones depend on, directly or transitively, including
+     * the given modules themselves
+     *
+     * @param selected selected modules
+     * @return upstream closure
+     */
+    public Set<PomHeader> getUpstreamClosure(Collection<PomHeader> selected) {
+        Set<PomHeader> result = new LinkedHashSet<>();
+        Deque<PomHeader> queue = new ArrayDeque<>(selected);
+        while (!queue.isEmpty()) {
+            PomHeader header = queue.poll();
+            if (!result.add(header)) {
+                continue;
+            }
+            queue.addAll(getUpstream(header));
+        }
+        return result;
+    }
+
+    /**
+     * @param header module
+     * @return reactor modules the given module directly refers to
+     */
+    public List<PomHeader> getUpstream(PomHeader header) {
+        List<PomHeader> result = new ArrayList<>();
+        if (header.hasParent()) {
+            File parentFile = header.getParentFile();
+            PomHeader parent = parentFile == null ? null : getModule(parentFile);
+            if (parent != null) {
+                result.add(parent);
+            } else {
+                result.addAll(find(header.getParentGroupId(), header.getParentArtifactId()));
+            }
+        }
+        for (String[] reference : header.getReferences()) {
+            result.addAll(find(resolveGroupId(header, reference[0]), reference[1]));
+        }
+        result.remove(header);
+        return result;
+    }
+
+    /**
+     * Checks whether models of the given modules can be built without the rest of reactor: parents
+     * not reachable via relative path and imported boms must belong to the given modules as well
+     *
+     * @param subtree modules
+     * @return whether project building of the given modules does not need models of other reactor modules
+     */
+    public boolean isSelfContained(Collection<PomHeader> subtree) {
+        Set<PomHeader> members = new HashSet<>(subtree);
+        for (PomHeader header : subtree) {
+            if (header.hasParent()) {
+                File parentFile = header.getParentFile();
+                PomHeader parent = parentFile == null ? null : getModule(parentFile);
+                if (parent == null || !header.getParentArtifactId().equals(parent.getArtifactId())) {
+                    if (!members.containsAll(find(header.getParentGroupId(), header.getParentArtifactId()))) {
+                        return false;
+                    }
+                }
+            }
+            for (String[] reference : header.getImports()) {
+                if (!members.containsAll(find(resolveGroupId(header, reference[0]), reference[1]))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    protected String resolveGroupId(PomHeader header, String groupId) {
+        if (groupId == null) {
+            return null;
+        }
+        switch (groupId) {
+            case "${project.groupId}":
+            case "${pom.groupId}":
+            case "${groupId}":
+                return header.getGroupId();
+            case "${project.parent.groupId}":
+            case "${parent.groupId}":
+                return header.getParentGroupId();
+            default:
+                return groupId;
+        }
+    }
+
+    /**
+     * Finds modules by groupId and artifactId, groupId given as unknown expression or null matches any
+     *
+     * @param groupId    groupId
+     * @param artifactId artifactId
+     * @return matching modules
+     */
+    public List<PomHeader> find(String groupId, String artifactId) {
+        List<PomHeader> candidates = byArtifactId.get(artifactId);
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+        if (groupId == null || groupId.contains("${")) {
+            return candidates;
+        }
+        List<PomHeader> result = new ArrayList<>(candidates.size());
+        for (PomHeader candidate : candidates) {
+            String candidateGroupId = candidate.getGroupId();
+            if (candidateGroupId == null || candidateGroupId.contains("${") || groupId.equals(candidateGroupId)) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+}
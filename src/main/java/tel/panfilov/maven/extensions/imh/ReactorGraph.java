@@ -0,0 +1,241 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Graph of dependencies between reactor modules with stale state propagation: module is stale if its own
+ * packaged artifact is stale or any module it depends on is stale.
+ * <p>
+ * Own staleness of module is checked once, modules get evaluated upstream first, so once a module has
+ * been evaluated subsequent queries are answered without touching the file system. State of module and
+ * its downstream modules is dropped once the module gets rebuilt, graph gets rebuilt once modules
+ * are added.
+ */
+public class ReactorGraph {
+
+    private final Map<String, ReactorModule> modules = new LinkedHashMap<>();
+
+    private final Map<String, List<String>> upstream = new HashMap<>();
+
+    private final Map<String, List<String>> downstream = new HashMap<>();
+
+    private final Map<String, Integer> order = new HashMap<>();
+
+    private final Predicate<ReactorModule> selfStale;
+
+    private final Map<String, Boolean> ownState = new ConcurrentHashMap<>();
+
+    private final Map<String, Boolean> state = new ConcurrentHashMap<>();
+
+    /**
+     * @param modules   reactor modules
+     * @param selfStale checks whether packaged artifact of module is stale
+     */
+    public ReactorGraph(Collection<ReactorModule> modules, Predicate<ReactorModule> selfStale) {
+        this.selfStale = selfStale;
+        for (ReactorModule module : modules) {
+            this.modules.put(module.getKey(), module);
+        }
+        for (ReactorModule module : modules) {
+            List<String> dependencies = new ArrayList<>();
+            for (String dependency : module.getDependencies()) {
+                if (this.modules.containsKey(dependency) && !dependency.equals(module.getKey())) {
+                    dependencies.add(dependency);
+                    downstream.computeIfAbsent(dependency, k -> new ArrayList<>()).add(module.getKey());
+                }
+            }
+            upstream.put(module.getKey(), dependencies);
+        }
+        sort();
+    }
+
+    /**
+     * Builds graph of the given modules, supposed to be called once modules have been added or their
+     * dependencies have changed: own staleness already known for modules of this graph is retained
+     *
+     * @param modules reactor modules
+     * @return new graph
+     */
+    public ReactorGraph rebuild(Collection<ReactorModule> modules) {
+        ReactorGraph graph = new ReactorGraph(modules, selfStale);
+        ownState.forEach((key, stale) -> {
+            if (graph.contains(key)) {
+                graph.ownState.put(key, stale);
+            }
+        });
+        return graph;
+    }
+
+    /**
+     * Assigns topological positions (Kahn's algorithm), modules participating in cycles go last
+     */
+    protected void sort() {
+        Map<String, Integer> incoming = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        for (String key : modules.keySet()) {
+            int count = upstream.get(key).size();
+            incoming.put(key, count);
+            if (count == 0) {
+                ready.add(key);
+            }
+        }
+        while (!ready.isEmpty()) {
+            String key = ready.poll();
+            order.put(key, order.size());
+            for (String dependent : downstream.getOrDefault(key, Collections.emptyList())) {
+                if (incoming.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        for (String key : modules.keySet()) {
+            order.putIfAbsent(key, order.size());
+        }
+    }
+
+    public boolean contains(String key) {
+        return modules.containsKey(key);
+    }
+
+    /**
+     * @param key module key
+     * @return whether module or any module it depends on, directly or transitively, is stale
+     */
+    public boolean isStale(String key) {
+        Boolean result = state.get(key);
+        if (result != null) {
+            return result;
+        }
+        if (!modules.containsKey(key)) {
+            return false;
+        }
+        for (String current : getUpstreamClosure(key)) {
+            if (state.containsKey(current)) {
+                continue;
+            }
+            boolean stale = isSelfStale(current);
+            for (String dependency : upstream.get(current)) {
+                // upstream modules precede the current one, modules of cycles may be not evaluated yet
+                stale |= state.getOrDefault(dependency, false);
+            }
+            state.put(current, stale);
+        }
+        return state.getOrDefault(key, false);
+    }
+
+    /**
+     * @param key module key
+     * @return whether packaged artifact of the module itself is stale
+     */
+    public boolean isSelfStale(String key) {
+        ReactorModule module = modules.get(key);
+        if (module == null) {
+            return false;
+        }
+        return ownState.computeIfAbsent(key, k -> selfStale.test(module));
+    }
+
+    /**
+     * @param key module key
+     * @return the module and modules it depends on, sorted topologically
+     */
+    protected List<String> getUpstreamClosure(String key) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(key);
+        while (!queue.isEmpty()) {
+            String current = queue.poll();
+            if (visited.add(current) && !state.containsKey(current)) {
+                queue.addAll(upstream.get(current));
+            }
+        }
+        List<String> result = new ArrayList<>(visited);
+        result.sort((first, second) -> Integer.compare(order.get(first), order.get(second)));
+        return result;
+    }
+
+    /**
+     * Drops state of the module and modules depending on it, supposed to be called once module
+     * has been rebuilt
+     *
+     * @param key module key
+     */
+    public void invalidate(String key) {
+        if (!modules.containsKey(key)) {
+            return;
+        }
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(key);
+        while (!queue.isEmpty()) {
+            String current = queue.poll();
+            if (visited.add(current)) {
+                ownState.remove(current);
+                state.remove(current);
+                queue.addAll(downstream.getOrDefault(current, Collections.emptyList()));
+            }
+        }
+    }
+
+    /**
+     * Computes minimal set of modules to rebuild: modules found stale themselves and modules
+     * depending on them, directly or transitively
+     *
+     * @return modules sorted topologically
+     */
+    public List<ReactorModule> getRebuildSet() {
+        Set<String> keys = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        ownState.forEach((key, stale) -> {
+            if (stale) {
+                queue.add(key);
+            }
+        });
+        while (!queue.isEmpty()) {
+            String current = queue.poll();
+            if (keys.add(current)) {
+                queue.addAll(downstream.getOrDefault(current, Collections.emptyList()));
+            }
+        }
+        List<String> sorted = new ArrayList<>(keys);
+        sorted.sort((first, second) -> Integer.compare(order.get(first), order.get(second)));
+        List<ReactorModule> result = new ArrayList<>(sorted.size());
+        for (String key : sorted) {
+            result.add(modules.get(key));
+        }
+        return result;
+    }
+
+}
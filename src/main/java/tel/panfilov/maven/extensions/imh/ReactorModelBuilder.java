@@ -0,0 +1,66 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.model.building.ModelBuildingResult;
+import org.apache.maven.model.building.Result;
+import org.codehaus.plexus.component.annotations.Component;
+import org.codehaus.plexus.component.annotations.Requirement;
+
+import java.io.File;
+
+/**
+ * Model builder of project builder IMH uses for root project discovery (see {@code components.xml}):
+ * project builder creates model cache per request, so raw models are fed from {@link ReactorModelCache}
+ * shared by discoveries happening in the same JVM.
+ */
+@Component(role = ModelBuilder.class, hint = "imh")
+public class ReactorModelBuilder implements ModelBuilder {
+
+    @Requirement
+    private ModelBuilder modelBuilder;
+
+    @Requirement
+    private ReactorModelCache modelCache;
+
+    @Override
+    public ModelBuildingResult build(ModelBuildingRequest request) throws ModelBuildingException {
+        request.setModelCache(modelCache.wrap(request.getModelCache()));
+        return modelBuilder.build(request);
+    }
+
+    @Override
+    public ModelBuildingResult build(ModelBuildingRequest request, ModelBuildingResult result) throws ModelBuildingException {
+        request.setModelCache(modelCache.wrap(request.getModelCache()));
+        return modelBuilder.build(request, result);
+    }
+
+    @Override
+    public Result<? extends Model> buildRawModel(File pomFile, int validationLevel, boolean locationTracking) {
+        return modelBuilder.buildRawModel(pomFile, validationLevel, locationTracking);
+    }
+
+}
@@ -1,28 +1,276 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
 package tel.panfilov.maven.extensions.imh;
 
+import org.apache.maven.model.Model;
 import org.apache.maven.model.building.ModelCache;
+import org.codehaus.plexus.component.annotations.Component;
 
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Model cache shared by all root project discoveries happening in the same JVM (e.g. Maven Daemon).
+ * <p>
+ * Only raw models are shared: those do not depend on profiles and properties of the request, unlike
+ * imported dependency management, which is left to the cache of the request, see {@link #wrap(ModelCache)}.
+ * Cache is bounded by number of entries and evicts least recently used ones, entries of models
+ * read from pom files are dropped once pom file gets modified.
+ */
+@Component(role = ReactorModelCache.class)
 public class ReactorModelCache implements ModelCache {
 
-    Map<String, Map<String, Map<String, Map<String, Object>>>> cache = new ConcurrentHashMap<>();
+    public static final int DEFAULT_MAX_SIZE = 2048;
+
+    /**
+     * Name of {@code ModelCacheTag.RAW}, the tag itself is not accessible
+     */
+    public static final String RAW_TAG = "raw";
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final Map<Key, Entry> cache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
 
+    };
+
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    @Override
     public Object get(String groupId, String artifactId, String version, String tag) {
-        return Optional.ofNullable(cache.get(groupId))
-                .map(m -> m.get(artifactId))
-                .map(m -> m.get(version))
-                .map(m -> m.get(tag))
-                .orElse(null);
+        if (!RAW_TAG.equals(tag)) {
+            return null;
+        }
+        Key key = new Key(groupId, artifactId, version, tag);
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry != null && !entry.isActual()) {
+                cache.remove(key);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.data;
+        }
     }
 
+    @Override
     public void put(String groupId, String artifactId, String version, String tag, Object data) {
-        cache.computeIfAbsent(groupId, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(artifactId, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(version, k -> new ConcurrentHashMap<>())
-                .put(tag, data);
+        if (!RAW_TAG.equals(tag)) {
+            return;
+        }
+        Entry entry = new Entry(data, getPomFile(data));
+        synchronized (cache) {
+            cache.put(new Key(groupId, artifactId, version, tag), entry);
+        }
+    }
+
+    /**
+     * Changes the limit of entries, excess entries get evicted
+     *
+     * @param maxSize max number of entries
+     */
+    public void setMaxSize(int maxSize) {
+        synchronized (cache) {
+            this.maxSize = Math.max(0, maxSize);
+            while (cache.size() > this.maxSize) {
+                cache.remove(cache.keySet().iterator().next());
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Combines this cache with the cache of model building request: raw models are taken from this cache,
+     * other entries from the request one
+     *
+     * @param requestCache cache of model building request, may be null
+     * @return combined cache
+     */
+    public ModelCache wrap(ModelCache requestCache) {
+        if (requestCache == this || requestCache instanceof RequestCache) {
+            return requestCache;
+        }
+        return new RequestCache(requestCache);
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions();
+    }
+
+    /**
+     * Raw models are cached wrapped into internal {@code ModelData}, so pom file is obtained via its
+     * {@code getModel} method
+     *
+     * @param data cached data
+     * @return pom file the data was read from, null if data does not come from pom file
+     */
+    protected static File getPomFile(Object data) {
+        Object model = data;
+        if (!(model instanceof Model)) {
+            try {
+                Method method = data.getClass().getMethod("getModel");
+                method.setAccessible(true);
+                model = method.invoke(data);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                return null;
+            }
+        }
+        return model instanceof Model ? ((Model) model).getPomFile() : null;
+    }
+
+    final class RequestCache implements ModelCache {
+
+        private final ModelCache delegate;
+
+        RequestCache(ModelCache delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void put(String groupId, String artifactId, String version, String tag, Object data) {
+            if (RAW_TAG.equals(tag)) {
+                ReactorModelCache.this.put(groupId, artifactId, version, tag, data);
+            } else if (delegate != null) {
+                delegate.put(groupId, artifactId, version, tag, data);
+            }
+        }
+
+        @Override
+        public Object get(String groupId, String artifactId, String version, String tag) {
+            if (RAW_TAG.equals(tag)) {
+                return ReactorModelCache.this.get(groupId, artifactId, version, tag);
+            }
+            return delegate != null ? delegate.get(groupId, artifactId, version, tag) : null;
+        }
+
+    }
+
+    static final class Entry {
+
+        private final Object data;
+
+        private final File pomFile;
+
+        private final long modified;
+
+        private final long size;
+
+        Entry(Object data, File pomFile) {
+            this.data = data;
+            this.pomFile = pomFile;
+            this.modified = pomFile == null ? 0 : pomFile.lastModified();
+            this.size = pomFile == null ? 0 : pomFile.length();
+        }
+
+        boolean isActual() {
+            return pomFile == null || pomFile.lastModified() == modified && pomFile.length() == size;
+        }
+
+    }
+
+    static final class Key {
+
+        private final String groupId;
+
+        private final String artifactId;
+
+        private final String version;
+
+        private final String tag;
+
+        private final int hash;
+
+        Key(String groupId, String artifactId, String version, String tag) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.tag = tag;
+            this.hash = Objects.hash(groupId, artifactId, version, tag);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash
+                    && Objects.equals(artifactId, key.artifactId)
+                    && Objects.equals(groupId, key.groupId)
+                    && Objects.equals(version, key.version)
+                    && Objects.equals(tag, key.tag);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,271 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.project.MavenProject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable descriptor of reactor module holding only what IMH needs: coordinates, packaging, pom file,
+ * build directories, final name, IMH properties, dependencies and packaged artifacts.
+ */
+public final class ReactorModule {
+
+    static final String IMH_PROPERTY_PREFIX = "imh.";
+
+    private final String groupId;
+
+    private final String artifactId;
+
+    private final String version;
+
+    private final String packaging;
+
+    private final String extension;
+
+    private final File pomFile;
+
+    private final String directory;
+
+    private final String outputDirectory;
+
+    private final String testOutputDirectory;
+
+    private final String finalName;
+
+    private final Map<String, String> properties;
+
+    private final List<String> dependencies;
+
+    private final ProjectArtifactIndex artifacts;
+
+    ReactorModule(String groupId, String artifactId, String version, String packaging, File pomFile,
+                  String directory, String outputDirectory, String testOutputDirectory, String finalName,
+                  Map<String, String> properties) {
+        this(groupId, artifactId, version, packaging, pomFile, directory, outputDirectory, testOutputDirectory,
+                finalName, properties, Collections.emptyList());
+    }
+
+    ReactorModule(String groupId, String artifactId, String version, String packaging, File pomFile,
+                  String directory, String outputDirectory, String testOutputDirectory, String finalName,
+                  Map<String, String> properties, List<String> dependencies) {
+        this(groupId, artifactId, version, packaging, null, pomFile, directory, outputDirectory,
+                testOutputDirectory, finalName, properties, dependencies, null);
+    }
+
+    private ReactorModule(String groupId, String artifactId, String version, String packaging, String extension,
+                          File pomFile, String directory, String outputDirectory, String testOutputDirectory,
+                          String finalName, Map<String, String> properties, List<String> dependencies,
+                          ProjectArtifactIndex artifacts) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.packaging = packaging;
+        this.extension = extension;
+        this.pomFile = pomFile;
+        this.directory = directory;
+        this.outputDirectory = outputDirectory;
+        this.testOutputDirectory = testOutputDirectory;
+        this.finalName = finalName;
+        this.properties = Collections.unmodifiableMap(properties);
+        this.dependencies = Collections.unmodifiableList(dependencies);
+        this.artifacts = artifacts;
+    }
+
+    /**
+     * Captures descriptor of the given project, artifacts are captured in their current state
+     *
+     * @param project maven project
+     * @return descriptor
+     */
+    public static ReactorModule of(MavenProject project) {
+        Build build = project.getBuild();
+        String extension = null;
+        if (project.getArtifact() != null && project.getArtifact().getArtifactHandler() != null) {
+            extension = project.getArtifact().getArtifactHandler().getExtension();
+        }
+        return new ReactorModule(project.getGroupId(), project.getArtifactId(), project.getVersion(),
+                project.getPackaging(), extension, project.getFile(), build.getDirectory(),
+                build.getOutputDirectory(), build.getTestOutputDirectory(), build.getFinalName(),
+                getImhProperties(project.getProperties()), getDependencyKeys(project.getDependencies()),
+                new ProjectArtifactIndex(project));
+    }
+
+    /**
+     * @param groupId    groupId
+     * @param artifactId artifactId
+     * @param version    version
+     * @return key identifying module in reactor
+     */
+    public static String getKey(String groupId, String artifactId, String version) {
+        return groupId + ':' + artifactId + ':' + version;
+    }
+
+    protected static List<String> getDependencyKeys(List<Dependency> dependencies) {
+        if (dependencies == null || dependencies.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (Dependency dependency : dependencies) {
+            result.add(getKey(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion()));
+        }
+        return new ArrayList<>(result);
+    }
+
+    protected static Map<String, String> getImhProperties(Properties properties) {
+        Map<String, String> result = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(IMH_PROPERTY_PREFIX)) {
+                result.put(name, properties.getProperty(name));
+            }
+        }
+        return result;
+    }
+
+    static ReactorModule read(DataInputStream input) throws IOException {
+        String groupId = input.readUTF();
+        String artifactId = input.readUTF();
+        String version = input.readUTF();
+        String packaging = input.readUTF();
+        File pomFile = new File(input.readUTF());
+        String directory = input.readUTF();
+        String outputDirectory = input.readUTF();
+        String testOutputDirectory = input.readUTF();
+        String finalName = input.readUTF();
+        int count = input.readInt();
+        Map<String, String> properties = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            properties.put(input.readUTF(), input.readUTF());
+        }
+        count = input.readInt();
+        List<String> dependencies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            dependencies.add(input.readUTF());
+        }
+        return new ReactorModule(groupId, artifactId, version, packaging, null, pomFile, directory, outputDirectory,
+                testOutputDirectory, finalName, properties, dependencies, null);
+    }
+
+    void write(DataOutputStream output) throws IOException {
+        output.writeUTF(groupId);
+        output.writeUTF(artifactId);
+        output.writeUTF(version);
+        output.writeUTF(packaging);
+        output.writeUTF(pomFile.getAbsolutePath());
+        output.writeUTF(directory);
+        output.writeUTF(outputDirectory);
+        output.writeUTF(testOutputDirectory);
+        output.writeUTF(finalName);
+        output.writeInt(properties.size());
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            output.writeUTF(property.getKey());
+            output.writeUTF(property.getValue());
+        }
+        output.writeInt(dependencies.size());
+        for (String dependency : dependencies) {
+            output.writeUTF(dependency);
+        }
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getPackaging() {
+        return packaging;
+    }
+
+    /**
+     * @return extension of the main artifact, null if unknown
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    public File getPomFile() {
+        return pomFile;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public String getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public String getTestOutputDirectory() {
+        return testOutputDirectory;
+    }
+
+    public String getFinalName() {
+        return finalName;
+    }
+
+    public String getProperty(String name) {
+        return properties.get(name);
+    }
+
+    /**
+     * @return keys of modules and artifacts this module depends on, see {@link #getKey(String, String, String)}
+     */
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
+    public String getKey() {
+        return getKey(groupId, artifactId, version);
+    }
+
+    /**
+     * @return index of main and attached artifacts, null if artifacts are unknown
+     */
+    public ProjectArtifactIndex getArtifacts() {
+        return artifacts;
+    }
+
+    String[] getCoordinates() {
+        return new String[]{groupId, artifactId, version};
+    }
+
+}
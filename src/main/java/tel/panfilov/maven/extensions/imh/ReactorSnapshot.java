@@ -0,0 +1,370 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.model.Activation;
+import org.apache.maven.model.ActivationFile;
+import org.apache.maven.model.ActivationOS;
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.Profile;
+import org.apache.maven.project.MavenProject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Persisted subset of root reactor IMH relies on: coordinates, packaging, pom file, build directories,
+ * final name, IMH properties and dependencies of every module.
+ * <p>
+ * Snapshot is keyed by fingerprint of reactor poms, {@code .mvn} configuration, activation and properties of
+ * settings profiles, user properties and inputs of profile activations (system properties, environment
+ * variables and files), so it gets rebuilt once any of those changes. Parent poms and boms outside of reactor
+ * are not tracked, as well as file activations referring to expressions other than {@code ${basedir}}.
+ */
+public class ReactorSnapshot {
+
+    public static final String SNAPSHOT_FILE = "reactor.snapshot";
+
+    private static final int MAGIC = 0x494D4854;
+
+    private static final String PROPERTY_INPUT = "property:";
+
+    private static final String FILE_INPUT = "file:";
+
+    private final List<ReactorModule> modules;
+
+    /**
+     * Inputs of activations of reactor pom profiles, those are resolved against build environment
+     * every time fingerprint gets computed
+     */
+    private final Set<String> activations;
+
+    private final String fingerprint;
+
+    protected ReactorSnapshot(List<ReactorModule> modules, Set<String> activations, String fingerprint) {
+        this.modules = modules;
+        this.activations = activations;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Captures snapshot of root project and its modules
+     *
+     * @param root    root project
+     * @param request execution request
+     * @return snapshot
+     */
+    public static ReactorSnapshot of(MavenProject root, MavenExecutionRequest request) {
+        List<ReactorModule> modules = of(root).getModules();
+        Set<String> activations = new TreeSet<>();
+        addActivations(activations, root);
+        if (root.getCollectedProjects() != null) {
+            root.getCollectedProjects().forEach(p -> addActivations(activations, p));
+        }
+        File rootDirectory = root.getFile().getParentFile();
+        return new ReactorSnapshot(modules, activations,
+                fingerprint(rootDirectory, getPomFiles(modules), activations, request));
+    }
+
+    /**
+     * Captures root project and its modules without fingerprint, such snapshot is never considered actual
+     *
+     * @param root root project
+     * @return snapshot
+     */
+    public static ReactorSnapshot of(MavenProject root) {
+        List<ReactorModule> modules = new ArrayList<>();
+        modules.add(ReactorModule.of(root));
+        if (root.getCollectedProjects() != null) {
+            root.getCollectedProjects().forEach(p -> modules.add(ReactorModule.of(p)));
+        }
+        return of(modules);
+    }
+
+    /**
+     * Wraps modules into snapshot without fingerprint, such snapshot is never considered actual
+     *
+     * @param modules modules, root project comes first
+     * @return snapshot
+     */
+    public static ReactorSnapshot of(List<ReactorModule> modules) {
+        return new ReactorSnapshot(modules, Collections.emptySet(), null);
+    }
+
+    /**
+     * Directory IMH keeps its state of root reactor in, snapshot has to be found before root project gets built,
+     * so the directory does not depend on build directory of root project
+     *
+     * @param rootPom root pom
+     * @return work directory
+     */
+    public static File getWorkDirectory(File rootPom) {
+        return new File(new File(rootPom.getAbsoluteFile().getParentFile(), "target"), "imh");
+    }
+
+    public static File getSnapshotFile(File rootPom) {
+        return new File(getWorkDirectory(rootPom), SNAPSHOT_FILE);
+    }
+
+    /**
+     * Reads snapshot from file
+     *
+     * @param file snapshot file
+     * @return snapshot, null if file is absent or corrupted
+     */
+    public static ReactorSnapshot read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (input.readInt() != MAGIC) {
+                return null;
+            }
+            String fingerprint = input.readUTF();
+            Set<String> activations = new TreeSet<>();
+            for (int i = input.readInt(); i > 0; i--) {
+                activations.add(input.readUTF());
+            }
+            int count = input.readInt();
+            List<ReactorModule> modules = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                modules.add(ReactorModule.read(input));
+            }
+            return new ReactorSnapshot(modules, activations, fingerprint);
+        } catch (IOException ex) {
+            // corrupted snapshot is equivalent to an absent one
+            return null;
+        }
+    }
+
+    public void write(File file) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            output.writeUTF(fingerprint);
+            output.writeInt(activations.size());
+            for (String activation : activations) {
+                output.writeUTF(activation);
+            }
+            output.writeInt(modules.size());
+            for (ReactorModule module : modules) {
+                module.write(output);
+            }
+        } catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Checks whether reactor poms and build environment are the same as they were when snapshot was taken
+     *
+     * @param rootDirectory root project directory
+     * @param request       execution request
+     * @return whether snapshot is up-to-date
+     */
+    public boolean isActual(File rootDirectory, MavenExecutionRequest request) {
+        return fingerprint != null && !modules.isEmpty() && fingerprint.equals(fingerprint(rootDirectory, getPomFiles(modules), activations, request));
+    }
+
+    public ReactorModule getRoot() {
+        return modules.get(0);
+    }
+
+    public List<ReactorModule> getModules() {
+        return modules;
+    }
+
+    /**
+     * @return fingerprint of reactor poms and build environment, null if snapshot is never reused
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    protected static List<File> getPomFiles(Collection<ReactorModule> modules) {
+        List<File> poms = new ArrayList<>(modules.size());
+        for (ReactorModule module : modules) {
+            poms.add(module.getPomFile());
+        }
+        return poms;
+    }
+
+    protected static String fingerprint(File rootDirectory, List<File> poms, Set<String> activations,
+                                        MavenExecutionRequest request) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        StringBuilder data = new StringBuilder();
+        for (File pom : poms) {
+            appendFile(data, pom.toPath());
+        }
+        Path config = rootDirectory.toPath().resolve(".mvn");
+        if (Files.isDirectory(config)) {
+            try (Stream<Path> files = Files.walk(config)) {
+                files.filter(Files::isRegularFile).sorted().forEach(file -> appendFile(data, file));
+            } catch (IOException ex) {
+                data.append("!.mvn\n");
+            }
+        }
+        data.append("active=").append(new TreeSet<>(request.getActiveProfiles())).append('\n');
+        data.append("inactive=").append(new TreeSet<>(request.getInactiveProfiles())).append('\n');
+        Map<String, String> profiles = new TreeMap<>();
+        Set<String> inputs = new TreeSet<>(activations);
+        for (Profile profile : request.getProfiles()) {
+            profiles.put(profile.getId(), describe(profile));
+            addActivations(inputs, profile, rootDirectory);
+        }
+        data.append("profiles=").append(profiles).append('\n');
+        for (String input : inputs) {
+            data.append(input).append('=').append(resolve(input, request)).append('\n');
+        }
+        Map<String, String> properties = new TreeMap<>();
+        request.getUserProperties().forEach((key, value) -> {
+            if (!String.valueOf(key).startsWith(ReactorModule.IMH_PROPERTY_PREFIX)) {
+                properties.put(String.valueOf(key), String.valueOf(value));
+            }
+        });
+        data.append("properties=").append(properties).append('\n');
+        Properties system = request.getSystemProperties();
+        data.append("java=").append(system.getProperty("java.version"))
+                .append(" os=").append(system.getProperty("os.name"))
+                .append(' ').append(system.getProperty("os.arch"))
+                .append(' ').append(system.getProperty("os.version")).append('\n');
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest(data.toString().getBytes(StandardCharsets.UTF_8))) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    protected static String describe(Profile profile) {
+        StringBuilder result = new StringBuilder();
+        Activation activation = profile.getActivation();
+        if (activation != null) {
+            result.append("default=").append(activation.isActiveByDefault());
+            result.append(" jdk=").append(activation.getJdk());
+            ActivationOS os = activation.getOs();
+            if (os != null) {
+                result.append(" os=").append(os.getName()).append(',').append(os.getFamily())
+                        .append(',').append(os.getArch()).append(',').append(os.getVersion());
+            }
+            ActivationProperty property = activation.getProperty();
+            if (property != null) {
+                result.append(" property=").append(property.getName()).append(',').append(property.getValue());
+            }
+            ActivationFile file = activation.getFile();
+            if (file != null) {
+                result.append(" file=").append(file.getExists()).append(',').append(file.getMissing());
+            }
+        }
+        result.append(" properties=").append(new TreeMap<>(profile.getProperties()));
+        return result.toString();
+    }
+
+    protected static void addActivations(Set<String> inputs, MavenProject project) {
+        for (Profile profile : project.getModel().getProfiles()) {
+            addActivations(inputs, profile, project.getBasedir());
+        }
+    }
+
+    /**
+     * Collects what activation of the given profile depends on besides poms and user properties:
+     * system properties, environment variables (as {@code env.*} properties) and files
+     *
+     * @param inputs  collected inputs
+     * @param profile profile
+     * @param basedir directory {@code ${basedir}} refers to
+     */
+    protected static void addActivations(Set<String> inputs, Profile profile, File basedir) {
+        Activation activation = profile.getActivation();
+        if (activation == null) {
+            return;
+        }
+        ActivationProperty property = activation.getProperty();
+        if (property != null && property.getName() != null) {
+            String name = property.getName().trim();
+            inputs.add(PROPERTY_INPUT + (name.startsWith("!") ? name.substring(1) : name));
+        }
+        ActivationFile file = activation.getFile();
+        if (file != null) {
+            for (String path : Arrays.asList(file.getExists(), file.getMissing())) {
+                if (path == null || path.trim().isEmpty()) {
+                    continue;
+                }
+                path = path.trim()
+                        .replace("${project.basedir}", basedir.getPath())
+                        .replace("${basedir}", basedir.getPath());
+                if (!path.contains("${")) {
+                    inputs.add(FILE_INPUT + new File(path).getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    protected static String resolve(String input, MavenExecutionRequest request) {
+        if (input.startsWith(FILE_INPUT)) {
+            return String.valueOf(new File(input.substring(FILE_INPUT.length())).exists());
+        }
+        // Maven exposes environment variables as env.* system properties
+        return request.getSystemProperties().getProperty(input.substring(PROPERTY_INPUT.length()));
+    }
+
+    protected static void appendFile(StringBuilder data, Path file) {
+        data.append(file.toAbsolutePath()).append(' ');
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            data.append(attributes.size()).append(' ').append(attributes.lastModifiedTime().toMillis());
+        } catch (IOException ex) {
+            data.append('!');
+        }
+        data.append('\n');
+    }
+
+}
@@ -43,6 +43,8 @@ import org.codehaus.plexus.PlexusContainer;
 import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.util.StringUtils;
 import org.eclipse.aether.DefaultRepositoryCache;
 import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositorySystemSession;
@@ -52,13 +54,37 @@ import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactDescriptorPolicy;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @Component(role = RootProjectLocator.class)
 public class RootProjectLocator {
 
+    public static final String SNAPSHOT_ENABLED_FLAG = "imh.snapshot";
+
+    public static final String PARTIAL_REACTOR_FLAG = "imh.partial";
+
+    public static final String MODEL_CACHE_SIZE_PROPERTY = "imh.modelcache.size";
+
+    public static final String DISCOVERY_THREADS_PROPERTY = "imh.discovery.threads";
+
+    @Requirement
+    private Logger logger;
+
     @Requirement
     private ProjectBuildingHelper projectBuildingHelper;
 
@@ -77,34 +103,477 @@ public class RootProjectLocator {
     @Requirement
     private PlexusContainer container;
 
+    @Requirement
+    private ReactorModelCache modelCache;
 
-    public MavenProject getRootProject(MavenSession mavenSession) throws ProjectBuildingException, ComponentLookupException {
-        MavenExecutionRequest executionRequest = mavenSession.getRequest();
-        RepositorySystemSession repositorySystemSession = tempRepositorySession(mavenSession);
-        ProjectBuildingRequest projectBuildingRequest = projectBuildingRequest(executionRequest, repositorySystemSession);
+    /**
+     * Root reactor discovered by the previous session, reused by daemon JVMs while reactor stays the same
+     */
+    private volatile Discovery previous;
+
+
+    public ReactorSnapshot getRootReactor(MavenSession mavenSession) throws ProjectBuildingException, ComponentLookupException {
         File rootPom = getRootPom(mavenSession);
         if (rootPom == null) {
             return null;
         }
+        return getRootReactor(mavenSession, rootPom);
+    }
+
+    /**
+     * Discovers modules of root reactor of the given root pom, the same as {@link #getRootReactor(MavenSession)}
+     * but without locating root pom again
+     *
+     * @param mavenSession maven session
+     * @param rootPom      root pom, as returned by {@link #getRootPom(MavenSession)}
+     * @return root reactor, root project comes first, null if root project can't be built
+     * @throws ProjectBuildingException if projects can't be built
+     * @throws ComponentLookupException if project builder is not available
+     */
+    public ReactorSnapshot getRootReactor(MavenSession mavenSession, File rootPom) throws ProjectBuildingException, ComponentLookupException {
+        MavenExecutionRequest executionRequest = mavenSession.getRequest();
+        Supplier<ProjectBuildingRequest> buildingRequest = memoize(() ->
+                projectBuildingRequest(executionRequest, tempRepositorySession(mavenSession)));
+        boolean partial = isPartialReactorEnabled(executionRequest);
+        if (!partial) {
+            ReactorSnapshot reactor = getPreviousRootReactor(rootPom, executionRequest);
+            if (reactor != null) {
+                return reactor;
+            }
+        }
+        boolean snapshotEnabled = isSnapshotEnabled(executionRequest);
+        if (snapshotEnabled) {
+            ReactorSnapshot reactor = loadSnapshot(rootPom, executionRequest);
+            if (reactor != null) {
+                previous = new Discovery(rootPom, reactor);
+                return reactor;
+            }
+        }
         ProjectBuilder projectBuilder = container.lookup(ProjectBuilder.class, "imh");
-        List<File> poms = Collections.singletonList(rootPom);
-        for (ProjectBuildingResult projectBuildingResult : projectBuilder.build(poms, true, projectBuildingRequest)) {
+        if (partial) {
+            ReactorSnapshot reactor = buildPartialReactor(projectBuilder, rootPom, executionRequest, buildingRequest.get());
+            if (reactor != null) {
+                return reactor;
+            }
+        }
+        MavenProject project = null;
+        int threads = getDiscoveryThreads(executionRequest);
+        if (threads > 1) {
+            project = buildParallel(rootPom, threads, buildingRequest.get());
+        }
+        if (project == null) {
+            List<File> poms = Collections.singletonList(rootPom);
+            for (ProjectBuildingResult projectBuildingResult : projectBuilder.build(poms, true, buildingRequest.get())) {
+                MavenProject built = projectBuildingResult.getProject();
+                if (built != null && rootPom.equals(built.getFile())) {
+                    project = built;
+                    break;
+                }
+            }
+        }
+        logger.debug("[IMH] model cache: " + modelCache);
+        if (project == null) {
+            return null;
+        }
+        // IMH needs a few fields of every module only, so full projects are released
+        ReactorSnapshot snapshot = ReactorSnapshot.of(project, executionRequest);
+        if (snapshotEnabled) {
+            saveSnapshot(snapshot, rootPom);
+        }
+        previous = new Discovery(rootPom, snapshot);
+        return snapshot;
+    }
+
+    protected ReactorSnapshot getPreviousRootReactor(File rootPom, MavenExecutionRequest executionRequest) {
+        Discovery discovery = previous;
+        if (discovery == null || !discovery.rootPom.equals(rootPom)) {
+            return null;
+        }
+        if (!discovery.reactor.isActual(rootPom.getParentFile(), executionRequest)) {
+            logger.debug("[IMH] root reactor has changed since previous build");
+            previous = null;
+            return null;
+        }
+        logger.info("[IMH] reusing root reactor of previous build");
+        return discovery.reactor;
+    }
+
+    /**
+     * Builds root project first and then subtrees of its modules concurrently, each subtree is built
+     * recursively by a separate task using its own project builder. Every task sees models of its own
+     * subtree only, so subtrees are built concurrently only if none of them refers to parents (other
+     * than via relative path) or imported boms of another subtree
+     *
+     * @param rootPom         root pom
+     * @param threads         number of threads, taken from {@code imh.discovery.threads}
+     * @param buildingRequest project building request
+     * @return root project, null if root project can't be built or subtrees depend on each other
+     * @throws ProjectBuildingException if projects can't be built or discovery has been interrupted
+     * @throws ComponentLookupException if project builder is not available
+     */
+    protected MavenProject buildParallel(File rootPom, int threads, ProjectBuildingRequest buildingRequest)
+            throws ProjectBuildingException, ComponentLookupException {
+        RawReactor reactor;
+        try {
+            reactor = RawReactor.read(rootPom);
+        } catch (IOException ex) {
+            logger.debug("[IMH] Failed to read root reactor modules, building root project sequentially: " + ex.getMessage());
+            return null;
+        }
+        MavenProject root = null;
+        ProjectBuilder rootBuilder = container.lookup(ProjectBuilder.class, "imh");
+        for (ProjectBuildingResult projectBuildingResult : rootBuilder.build(Collections.singletonList(rootPom), false, buildingRequest)) {
             MavenProject project = projectBuildingResult.getProject();
-            if (project == null) {
+            if (project != null && rootPom.equals(project.getFile())) {
+                root = project;
+            }
+        }
+        if (root == null) {
+            return null;
+        }
+        List<File> modules = new ArrayList<>();
+        for (String module : root.getModules()) {
+            File moduleFile = new File(root.getBasedir(), module);
+            if (moduleFile.isDirectory()) {
+                moduleFile = new File(moduleFile, "pom.xml");
+            }
+            List<PomHeader> subtree = reactor.getSubtree(moduleFile);
+            if (subtree.isEmpty() || !reactor.isSelfContained(subtree)) {
+                logger.debug("[IMH] subtree of " + moduleFile + " refers to other modules, building root project sequentially");
+                return null;
+            }
+            modules.add(moduleFile);
+        }
+        List<MavenProject> collected = new ArrayList<>();
+        if (modules.isEmpty()) {
+            root.setCollectedProjects(collected);
+            return root;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, modules.size()), runnable -> {
+            Thread thread = new Thread(runnable, "imh-discovery-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<List<ProjectBuildingResult>>> futures = new ArrayList<>(modules.size());
+            for (File module : modules) {
+                // project builder keeps per-build state, so every task gets its own instance
+                ProjectBuilder projectBuilder = container.lookup(ProjectBuilder.class, "imh");
+                // building request is mutable, so every task gets its own copy sharing the repository session
+                ProjectBuildingRequest request = new DefaultProjectBuildingRequest(buildingRequest);
+                futures.add(executor.submit(() -> projectBuilder.build(Collections.singletonList(module), true, request)));
+            }
+            for (Future<List<ProjectBuildingResult>> future : futures) {
+                for (ProjectBuildingResult projectBuildingResult : getResult(future)) {
+                    if (projectBuildingResult.getProject() != null) {
+                        collected.add(projectBuildingResult.getProject());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        root.setCollectedProjects(collected);
+        logger.debug("[IMH] built " + (collected.size() + 1) + " root reactor modules using " + threads + " threads");
+        return root;
+    }
+
+    protected <T> T getResult(Future<T> future) throws ProjectBuildingException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ProjectBuildingException(null, "[IMH] root project discovery has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ProjectBuildingException) {
+                throw (ProjectBuildingException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Parallel discovery is opt-in via {@code -Dimh.discovery.threads=<threads>}, it is not tied to {@code -T}
+     *
+     * @param executionRequest execution request
+     * @return number of threads, values below 2 mean sequential discovery
+     */
+    protected int getDiscoveryThreads(MavenExecutionRequest executionRequest) {
+        String value = executionRequest.getUserProperties().getProperty(DISCOVERY_THREADS_PROPERTY);
+        if (StringUtils.isEmpty(value)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            logger.warn("[IMH] invalid number of discovery threads: " + value);
+            return 0;
+        }
+    }
+
+    protected ReactorSnapshot loadSnapshot(File rootPom, MavenExecutionRequest executionRequest) {
+        File file = ReactorSnapshot.getSnapshotFile(rootPom);
+        ReactorSnapshot snapshot = ReactorSnapshot.read(file);
+        if (snapshot == null || !snapshot.isActual(rootPom.getParentFile(), executionRequest)) {
+            logger.debug("[IMH] reactor snapshot " + file + " is missing or outdated");
+            return null;
+        }
+        logger.info("[IMH] using reactor snapshot: " + file);
+        return snapshot;
+    }
+
+    protected void saveSnapshot(ReactorSnapshot snapshot, File rootPom) {
+        File file = ReactorSnapshot.getSnapshotFile(rootPom);
+        try {
+            snapshot.write(file);
+        } catch (IOException ex) {
+            logger.warn("[IMH] Failed to write reactor snapshot " + file, ex);
+        }
+    }
+
+    /**
+     * Builds root project and those reactor modules selected projects depend on, the rest of modules
+     * become placeholders carrying coordinates, default build directories and keys of modules they refer to
+     *
+     * @param projectBuilder   project builder
+     * @param rootPom          root pom
+     * @param executionRequest execution request
+     * @param buildingRequest  project building request
+     * @return root reactor, null if upstream closure can't be determined
+     * @throws ProjectBuildingException if projects can't be built
+     */
+    protected ReactorSnapshot buildPartialReactor(ProjectBuilder projectBuilder, File rootPom, MavenExecutionRequest executionRequest,
+                                               ProjectBuildingRequest buildingRequest) throws ProjectBuildingException {
+        RawReactor reactor;
+        try {
+            reactor = RawReactor.read(rootPom);
+        } catch (IOException ex) {
+            logger.debug("[IMH] Failed to read root reactor modules, building the whole reactor: " + ex.getMessage());
+            return null;
+        }
+        List<PomHeader> selected = getSelectedModules(reactor, executionRequest);
+        if (selected == null) {
+            logger.debug("[IMH] Failed to match selected projects, building the whole reactor");
+            return null;
+        }
+        Set<PomHeader> closure = reactor.getUpstreamClosure(selected);
+        closure.add(reactor.getModule(rootPom));
+        List<File> poms = new ArrayList<>(closure.size());
+        for (PomHeader header : closure) {
+            poms.add(header.getFile());
+        }
+        Map<File, MavenProject> built = new HashMap<>();
+        for (ProjectBuildingResult projectBuildingResult : projectBuilder.build(poms, false, buildingRequest)) {
+            MavenProject project = projectBuildingResult.getProject();
+            if (project != null && project.getFile() != null) {
+                built.put(normalize(project.getFile()), project);
+            }
+        }
+        MavenProject root = built.get(normalize(rootPom));
+        if (root == null) {
+            return null;
+        }
+        List<ReactorModule> modules = new ArrayList<>();
+        modules.add(ReactorModule.of(root));
+        for (PomHeader header : reactor.getModules()) {
+            File pom = normalize(header.getFile());
+            if (pom.equals(root.getFile())) {
                 continue;
             }
-            if (rootPom.equals(project.getFile())) {
-                return project;
+            MavenProject project = built.get(pom);
+            if (project != null) {
+                modules.add(ReactorModule.of(project));
+            } else {
+                List<String> dependencies = getUpstreamKeys(reactor, header, built, root, executionRequest);
+                modules.add(placeholder(header, dependencies, root, executionRequest));
             }
         }
-        return null;
+        logger.info("[IMH] built " + built.size() + " of " + reactor.getModules().size() + " root reactor modules");
+        // placeholders differ from modules built by full discovery, so partial reactor is never reused
+        return ReactorSnapshot.of(modules);
     }
 
-    protected File getRootPom(MavenSession mavenSession) {
+    /**
+     * Matches {@code -pl} selectors against modules of the build, the same way Maven does:
+     * {@code [groupId]:artifactId} or path relative to base directory
+     *
+     * @param reactor          root reactor
+     * @param executionRequest execution request
+     * @return modules upstream closure should start from, null if selector can't be matched
+     */
+    protected List<PomHeader> getSelectedModules(RawReactor reactor, MavenExecutionRequest executionRequest) {
+        List<PomHeader> modules = executionRequest.isRecursive()
+                ? reactor.getSubtree(executionRequest.getPom())
+                : Collections.singletonList(reactor.getModule(executionRequest.getPom()));
+        if (modules.isEmpty() || modules.get(0) == null) {
+            return null;
+        }
+        List<String> selectors = executionRequest.getSelectedProjects();
+        String makeBehavior = executionRequest.getMakeBehavior();
+        if (selectors == null || selectors.isEmpty()
+                || MavenExecutionRequest.REACTOR_MAKE_DOWNSTREAM.equals(makeBehavior)
+                || MavenExecutionRequest.REACTOR_MAKE_BOTH.equals(makeBehavior)) {
+            return modules;
+        }
+        File baseDirectory = executionRequest.getBaseDirectory() != null
+                ? new File(executionRequest.getBaseDirectory()) : executionRequest.getPom().getParentFile();
+        List<PomHeader> result = new ArrayList<>();
+        for (String selector : selectors) {
+            selector = selector.trim();
+            if (selector.startsWith("!") || selector.startsWith("-")) {
+                continue;
+            }
+            if (selector.startsWith("?") || selector.startsWith("+")) {
+                selector = selector.substring(1);
+            }
+            boolean matched = false;
+            for (PomHeader module : modules) {
+                if (isSelected(module, selector, baseDirectory)) {
+                    result.add(module);
+                    matched = true;
+                }
+            }
+            if (!matched) {
+                return null;
+            }
+        }
+        return result.isEmpty() ? null : result;
+    }
+
+    protected boolean isSelected(PomHeader module, String selector, File baseDirectory) {
+        if (selector.startsWith(":")) {
+            return selector.substring(1).equals(module.getArtifactId());
+        }
+        if (selector.contains(":")) {
+            return selector.equals(module.getGroupId() + ":" + module.getArtifactId());
+        }
+        File file = normalize(new File(baseDirectory, selector));
+        if (file.isDirectory()) {
+            return file.equals(normalize(module.getFile()).getParentFile());
+        }
+        return file.equals(normalize(module.getFile()));
+    }
+
+    /**
+     * Keys of reactor modules the given module refers to according to raw poms, so placeholders take part
+     * in stale state propagation the same way built modules do
+     */
+    protected List<String> getUpstreamKeys(RawReactor reactor, PomHeader header, Map<File, MavenProject> built,
+                                           MavenProject root, MavenExecutionRequest executionRequest) {
+        List<String> result = new ArrayList<>();
+        for (PomHeader upstream : reactor.getUpstream(header)) {
+            MavenProject project = built.get(normalize(upstream.getFile()));
+            if (project != null) {
+                result.add(ReactorModule.getKey(project.getGroupId(), project.getArtifactId(), project.getVersion()));
+            } else {
+                result.add(ReactorModule.getKey(interpolate(upstream.getGroupId(), root, executionRequest),
+                        upstream.getArtifactId(), interpolate(upstream.getVersion(), root, executionRequest)));
+            }
+        }
+        return result;
+    }
+
+    protected ReactorModule placeholder(PomHeader header, List<String> dependencies, MavenProject root,
+                                        MavenExecutionRequest executionRequest) {
+        File pom = normalize(header.getFile());
+        File directory = new File(pom.getParentFile(), "target");
+        String version = interpolate(header.getVersion(), root, executionRequest);
+        return new ReactorModule(
+                interpolate(header.getGroupId(), root, executionRequest),
+                header.getArtifactId(),
+                version,
+                header.getPackaging(),
+                pom,
+                directory.getPath(),
+                new File(directory, "classes").getPath(),
+                new File(directory, "test-classes").getPath(),
+                header.getArtifactId() + "-" + version,
+                Collections.emptyMap(),
+                dependencies
+        );
+    }
+
+    /**
+     * Resolves {@code ${...}} expressions in raw coordinates (e.g. CI friendly versions) using user, system
+     * and root project properties
+     */
+    protected String interpolate(String value, MavenProject root, MavenExecutionRequest executionRequest) {
+        if (value == null || !value.contains("${")) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder();
+        int start = 0;
+        int open;
+        while ((open = value.indexOf("${", start)) >= 0) {
+            int close = value.indexOf('}', open);
+            if (close < 0) {
+                break;
+            }
+            result.append(value, start, open);
+            String name = value.substring(open + 2, close);
+            String resolved = executionRequest.getUserProperties().getProperty(name);
+            if (resolved == null) {
+                resolved = executionRequest.getSystemProperties().getProperty(name);
+            }
+            if (resolved == null) {
+                resolved = root.getProperties().getProperty(name);
+            }
+            if (resolved == null && ("project.version".equals(name) || "project.parent.version".equals(name))) {
+                resolved = root.getVersion();
+            }
+            result.append(resolved != null ? resolved : value.substring(open, close + 1));
+            start = close + 1;
+        }
+        return result.append(value.substring(start)).toString();
+    }
+
+    protected boolean isPartialReactorEnabled(MavenExecutionRequest executionRequest) {
+        return "true".equalsIgnoreCase(executionRequest.getUserProperties().getProperty(PARTIAL_REACTOR_FLAG));
+    }
+
+    protected boolean isSnapshotEnabled(MavenExecutionRequest executionRequest) {
+        return "true".equalsIgnoreCase(executionRequest.getUserProperties().getProperty(SNAPSHOT_ENABLED_FLAG));
+    }
+
+    /**
+     * Builds cheap pre-index of root reactor from raw poms
+     *
+     * @param rootPom root pom
+     * @return groupIds and artifactIds of root reactor modules, null if those can't be determined
+     */
+    public CoordinateFilter getReactorCandidates(File rootPom) {
+        try {
+            return RawReactor.read(rootPom, false).getCoordinateFilter();
+        } catch (IOException ex) {
+            logger.debug("[IMH] Failed to read root reactor modules: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    public File getRootPom(MavenSession mavenSession) {
+        MavenExecutionRequest executionRequest = mavenSession.getRequest();
+        return getRootPom(mavenSession, memoize(() ->
+                projectBuildingRequest(executionRequest, tempRepositorySession(mavenSession))));
+    }
+
+    protected File getRootPom(MavenSession mavenSession, Supplier<ProjectBuildingRequest> buildingRequest) {
         MavenExecutionRequest executionRequest = mavenSession.getRequest();
+        configureModelCache(executionRequest);
         File rootDirectory = executionRequest.getMultiModuleProjectDirectory();
-        RepositorySystemSession repositorySystemSession = tempRepositorySession(mavenSession);
-        ProjectBuildingRequest projectBuildingRequest = projectBuildingRequest(executionRequest, repositorySystemSession);
+        try {
+            return findRootPom(executionRequest.getPom(), rootDirectory);
+        } catch (IOException ex) {
+            logger.debug("[IMH] Failed to discover root pom via parent references, building model: " + ex.getMessage());
+        }
+        ProjectBuildingRequest projectBuildingRequest = buildingRequest.get();
         ModelBuildingRequest modelBuildingRequest = modelBuildingRequest(executionRequest.getPom(), projectBuildingRequest);
         ModelBuildingResult result;
         try {
@@ -112,12 +581,108 @@ public class RootProjectLocator {
         } catch (ModelBuildingException ex) {
             result = ex.getResult();
         }
+        logger.debug("[IMH] model cache: " + modelCache);
         if (result == null) {
             return null;
         }
         return getRootPom(result, rootDirectory);
     }
 
+    protected void configureModelCache(MavenExecutionRequest executionRequest) {
+        int maxSize = getModelCacheSize(executionRequest);
+        // cache is shared by all builds in the JVM, so it gets resized only when the limit changes
+        if (modelCache.getMaxSize() != maxSize) {
+            modelCache.setMaxSize(maxSize);
+        }
+    }
+
+    protected int getModelCacheSize(MavenExecutionRequest executionRequest) {
+        String value = executionRequest.getUserProperties().getProperty(MODEL_CACHE_SIZE_PROPERTY);
+        if (StringUtils.isEmpty(value)) {
+            return ReactorModelCache.DEFAULT_MAX_SIZE;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException ex) {
+            logger.warn("[IMH] invalid model cache size: " + value);
+            return ReactorModelCache.DEFAULT_MAX_SIZE;
+        }
+    }
+
+    /**
+     * Walks up parent references of raw poms, the same way {@link #getRootPom(ModelBuildingResult, File)}
+     * walks lineage of the built model
+     *
+     * @param pom           pom file of the build
+     * @param rootDirectory multi module project directory
+     * @return root pom, null if there is no root pom
+     * @throws IOException if pom can't be read or lineage can't be determined without building the model
+     */
+    protected File findRootPom(File pom, File rootDirectory) throws IOException {
+        if (pom == null || !pom.isFile()) {
+            throw new IOException("pom file is not available");
+        }
+        File root = normalize(rootDirectory);
+        Set<File> visited = new HashSet<>();
+        File current = normalize(pom);
+        while (visited.add(current)) {
+            File dir = current.getParentFile();
+            if (dir.equals(root) || new File(dir, ".mvn").isDirectory()) {
+                return current;
+            }
+            PomHeader header = PomHeader.read(current);
+            if (!header.hasParent()) {
+                break;
+            }
+            File parent = header.getParentFile();
+            if (parent == null || !parent.isFile()) {
+                // parent comes from repository
+                break;
+            }
+            PomHeader parentHeader = PomHeader.read(parent);
+            if (!Objects.equals(header.getParentGroupId(), parentHeader.getGroupId())
+                    || !Objects.equals(header.getParentArtifactId(), parentHeader.getArtifactId())) {
+                break;
+            }
+            if (!Objects.equals(header.getParentVersion(), parentHeader.getVersion())) {
+                if (isExpression(header.getParentVersion()) || isExpression(parentHeader.getVersion())) {
+                    throw new IOException("can't match parent version of " + current);
+                }
+                break;
+            }
+            current = normalize(parent);
+        }
+        File rootPom = new File(root, "pom.xml");
+        if (rootPom.isFile() && new File(root, ".mvn").isDirectory()) {
+            return rootPom;
+        }
+        return null;
+    }
+
+    protected File normalize(File file) {
+        return file.toPath().toAbsolutePath().normalize().toFile();
+    }
+
+    protected boolean isExpression(String value) {
+        return value == null || value.contains("${");
+    }
+
+    protected static <T> Supplier<T> memoize(Supplier<T> supplier) {
+        return new Supplier<T>() {
+
+            private T value;
+
+            @Override
+            public T get() {
+                if (value == null) {
+                    value = supplier.get();
+                }
+                return value;
+            }
+
+        };
+    }
+
     protected File getRootPom(ModelBuildingResult result, File rootDirectory) {
         Predicate<File> isRoot = dir -> dir.equals(rootDirectory);
         Predicate<File> hasMvnFolder = dir -> new File(dir, ".mvn").isDirectory();
@@ -174,7 +739,7 @@ public class RootProjectLocator {
         request.setUserProperties(projectBuildingRequest.getUserProperties());
         request.setBuildStartTime(projectBuildingRequest.getBuildStartTime());
         request.setModelResolver(modelResolver(projectBuildingRequest));
-        request.setModelCache(new ReactorModelCache());
+        request.setModelCache(modelCache.wrap(null));
         return request;
     }
 
@@ -193,4 +758,17 @@ public class RootProjectLocator {
         );
     }
 
+    static final class Discovery {
+
+        private final File rootPom;
+
+        private final ReactorSnapshot reactor;
+
+        Discovery(File rootPom, ReactorSnapshot reactor) {
+            this.rootPom = rootPom;
+            this.reactor = reactor;
+        }
+
+    }
+
 }
@@ -0,0 +1,339 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the newest file modification time within module output directories.
+ * <p>
+ * For every directory of the output tree the index remembers the directory modification time,
+ * the newest modification time among the files it directly contains, the names of those files and
+ * the names of its subdirectories. On subsequent lookups only directories whose modification time has
+ * changed get listed again, state of unchanged directories is reused without touching their files.
+ * Build tools (javac, maven-resources-plugin) rewrite existing output files in place, that does not change
+ * modification time of the directory, so for output directories written during the current build files of
+ * unchanged directories are checked by name, see {@link #getEntry(Path, boolean)}.
+ */
+public class StalenessIndex {
+
+    private static final int MAGIC = 0x494d4832;
+
+    private final File file;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    private volatile boolean dirty;
+
+    public StalenessIndex(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns up-to-date index entry for the given output directory, refreshing the stored state of directories
+     * which modification time has changed
+     *
+     * @param directory module output directory
+     * @return index entry
+     * @throws IOException if directory can't be read
+     */
+    public Entry getEntry(Path directory) throws IOException {
+        return getEntry(directory, false);
+    }
+
+    /**
+     * Returns up-to-date index entry for the given output directory
+     *
+     * @param directory   module output directory
+     * @param verifyFiles whether to check modification times of files within unchanged directories, supposed
+     *                    to be requested for output directories written during the current build only
+     * @return index entry
+     * @throws IOException if directory can't be read
+     */
+    public Entry getEntry(Path directory, boolean verifyFiles) throws IOException {
+        load();
+        String key = directory.toAbsolutePath().toString();
+        Entry previous = entries.get(key);
+        Map<String, DirectoryState> directories = new HashMap<>();
+        boolean changed = refresh(directory, "", previous == null ? Collections.emptyMap() : previous.directories,
+                directories, verifyFiles);
+        if (previous != null && !changed && previous.directories.size() == directories.size()) {
+            return previous;
+        }
+        Entry entry = new Entry(directories);
+        entries.put(key, entry);
+        dirty = true;
+        return entry;
+    }
+
+    protected boolean refresh(Path directory, String relative, Map<String, DirectoryState> previous,
+                              Map<String, DirectoryState> current, boolean verifyFiles) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = readAttributes(directory);
+        } catch (NoSuchFileException ex) {
+            return true;
+        }
+        if (!attributes.isDirectory()) {
+            return true;
+        }
+
+        long modified = attributes.lastModifiedTime().toMillis();
+        DirectoryState state = previous.get(relative);
+        boolean changed = false;
+        if (state == null || state.modified != modified) {
+            state = scan(directory, modified);
+            changed = true;
+        } else if (verifyFiles) {
+            DirectoryState actual = check(directory, state);
+            changed = actual != state;
+            state = actual;
+        }
+        current.put(relative, state);
+        for (String child : state.subdirectories) {
+            String childRelative = relative.isEmpty() ? child : relative + '/' + child;
+            changed |= refresh(directory.resolve(child), childRelative, previous, current, verifyFiles);
+        }
+        return changed;
+    }
+
+    /**
+     * Checks modification times of files known to the unchanged directory
+     *
+     * @param directory directory
+     * @param state     previous state of the directory
+     * @return the given state if none of files has been changed, actual state otherwise
+     * @throws IOException if directory can't be read
+     */
+    protected DirectoryState check(Path directory, DirectoryState state) throws IOException {
+        long newest = -1;
+        for (String name : state.files) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = readAttributes(directory.resolve(name));
+            } catch (NoSuchFileException ex) {
+                return scan(directory, state.modified);
+            }
+            if (attributes.isDirectory()) {
+                return scan(directory, state.modified);
+            }
+            newest = Math.max(newest, attributes.lastModifiedTime().toMillis());
+        }
+        if (newest == state.newest) {
+            return state;
+        }
+        return new DirectoryState(state.modified, newest, state.files, state.subdirectories);
+    }
+
+    protected DirectoryState scan(Path directory, long modified) throws IOException {
+        long newest = -1;
+        List<String> files = new ArrayList<>();
+        List<String> subdirectories = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                BasicFileAttributes attributes;
+                try {
+                    attributes = readAttributes(child);
+                } catch (NoSuchFileException ex) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    subdirectories.add(child.getFileName().toString());
+                } else {
+                    files.add(child.getFileName().toString());
+                    newest = Math.max(newest, attributes.lastModifiedTime().toMillis());
+                }
+            }
+        }
+        return new DirectoryState(modified, newest, files, subdirectories);
+    }
+
+    protected BasicFileAttributes readAttributes(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+
+    protected void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (file == null || !file.isFile()) {
+                return;
+            }
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+                if (input.readInt() != MAGIC) {
+                    return;
+                }
+                int modules = input.readInt();
+                for (int i = 0; i < modules; i++) {
+                    String key = input.readUTF();
+                    int directoryCount = input.readInt();
+                    Map<String, DirectoryState> directories = new HashMap<>();
+                    for (int j = 0; j < directoryCount; j++) {
+                        String relative = input.readUTF();
+                        long modified = input.readLong();
+                        long newest = input.readLong();
+                        int count = input.readInt();
+                        List<String> files = new ArrayList<>(count);
+                        for (int k = 0; k < count; k++) {
+                            files.add(input.readUTF());
+                        }
+                        int children = input.readInt();
+                        List<String> subdirectories = new ArrayList<>(children);
+                        for (int k = 0; k < children; k++) {
+                            subdirectories.add(input.readUTF());
+                        }
+                        directories.put(relative, new DirectoryState(modified, newest, files, subdirectories));
+                    }
+                    entries.put(key, new Entry(directories));
+                }
+            } catch (IOException ex) {
+                // corrupted index is equivalent to an absent one
+                entries.clear();
+            }
+        }
+    }
+
+    /**
+     * Persists index if it has been changed since it was loaded
+     *
+     * @throws IOException if index file can't be written
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty || file == null) {
+            return;
+        }
+        Files.createDirectories(file.getParentFile().toPath());
+        Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            Map<String, Entry> snapshot = new HashMap<>(entries);
+            output.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> module : snapshot.entrySet()) {
+                output.writeUTF(module.getKey());
+                Map<String, DirectoryState> directories = module.getValue().directories;
+                output.writeInt(directories.size());
+                for (Map.Entry<String, DirectoryState> directory : directories.entrySet()) {
+                    DirectoryState state = directory.getValue();
+                    output.writeUTF(directory.getKey());
+                    output.writeLong(state.modified);
+                    output.writeLong(state.newest);
+                    output.writeInt(state.files.size());
+                    for (String name : state.files) {
+                        output.writeUTF(name);
+                    }
+                    output.writeInt(state.subdirectories.size());
+                    for (String child : state.subdirectories) {
+                        output.writeUTF(child);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+    }
+
+    public static class Entry {
+
+        private final Map<String, DirectoryState> directories;
+
+        private final long newest;
+
+        private final int files;
+
+        Entry(Map<String, DirectoryState> directories) {
+            this.directories = directories;
+            long newest = -1;
+            int files = 0;
+            for (DirectoryState state : directories.values()) {
+                newest = Math.max(newest, state.newest);
+                files += state.files.size();
+            }
+            this.newest = newest;
+            this.files = files;
+        }
+
+        /**
+         * @return the newest modification time among output files, -1 if there are no files
+         */
+        public long getNewest() {
+            return newest;
+        }
+
+        /**
+         * @return number of output files
+         */
+        public int getFiles() {
+            return files;
+        }
+
+    }
+
+    static class DirectoryState {
+
+        final long modified;
+
+        final long newest;
+
+        final List<String> files;
+
+        final List<String> subdirectories;
+
+        DirectoryState(long modified, long newest, List<String> files, List<String> subdirectories) {
+            this.modified = modified;
+            this.newest = newest;
+            this.files = files;
+            this.subdirectories = subdirectories;
+        }
+
+    }
+
+}
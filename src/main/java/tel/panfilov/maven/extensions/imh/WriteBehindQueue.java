@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Background queue of overlay repository writes, writes of the same coordinate are performed
+ * in submission order, readers of coordinate wait for its pending writes.
+ * <p>
+ * Closed queue completes all writes submitted before, writes submitted afterwards are performed
+ * by the submitting thread, so no write ever gets abandoned.
+ */
+public class WriteBehindQueue {
+
+    private final ExecutorService executor;
+
+    private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+
+    private final Consumer<Throwable> errorHandler;
+
+    private boolean closed;
+
+    public WriteBehindQueue(int threads, Consumer<Throwable> errorHandler) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "imh-write-behind-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Queues write of the given coordinate
+     *
+     * @param key   coordinate
+     * @param write write operation
+     */
+    public void submit(String key, Runnable write) {
+        Runnable guarded = () -> {
+            try {
+                write.run();
+            } catch (RuntimeException | Error ex) {
+                errorHandler.accept(ex);
+            }
+        };
+        synchronized (this) {
+            if (!closed) {
+                CompletableFuture<Void> future = pending.compute(key, (k, previous) -> previous == null
+                        ? CompletableFuture.runAsync(guarded, executor)
+                        : previous.thenRunAsync(guarded, executor));
+                future.whenComplete((result, ex) -> pending.remove(key, future));
+                return;
+            }
+        }
+        await(key);
+        guarded.run();
+    }
+
+    /**
+     * Waits for pending writes of the given coordinate
+     *
+     * @param key coordinate
+     */
+    public void await(String key) {
+        CompletableFuture<Void> future = pending.get(key);
+        if (future != null) {
+            future.join();
+        }
+    }
+
+    /**
+     * Waits for all pending writes
+     */
+    public void flush() {
+        while (!pending.isEmpty()) {
+            for (Map.Entry<String, CompletableFuture<Void>> entry : new ArrayList<>(pending.entrySet())) {
+                entry.getValue().join();
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Waits for all pending writes and stops background threads
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class ContentStoreTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private Path store;
+
+    private Path overlay;
+
+    private Path source;
+
+    @Before
+    public void setUp() throws Exception {
+        store = temp.newFolder("store").toPath();
+        overlay = temp.newFolder("overlay").toPath();
+        source = Files.write(temp.getRoot().toPath().resolve("app-1.jar"), "content".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(source, FileTime.fromMillis(1_000_000L));
+    }
+
+    @Test
+    public void storesSameContentOnce() throws Exception {
+        Path first = overlay.resolve("g/app/1/app-1.jar");
+        Path second = overlay.resolve("g/app/2/app-2.jar");
+        ContentStore contentStore = new ContentStore(store, overlay);
+        contentStore.install(source, first, "g/app/1/app-1.jar");
+        contentStore.install(source, second, "g/app/2/app-2.jar");
+
+        assertEquals(1, countObjects());
+        assertTrue(Files.isSameFile(first, second));
+        assertEquals(1_000_000L, Files.getLastModifiedTime(first).toMillis());
+        assertEquals(3, Files.getAttribute(first, "unix:nlink"));
+
+        // reinstalling the same content keeps the link
+        contentStore.install(source, first, "g/app/1/app-1.jar");
+        assertEquals(1, countObjects());
+        assertTrue(Files.isSameFile(first, second));
+    }
+
+    @Test
+    public void removesStoredCopyOnceNothingLinksToIt() throws Exception {
+        Path first = overlay.resolve("g/app/1/app-1.jar");
+        Path second = overlay.resolve("g/app/2/app-2.jar");
+        ContentStore contentStore = new ContentStore(store, overlay);
+        contentStore.install(source, first, "g/app/1/app-1.jar");
+        contentStore.install(source, second, "g/app/2/app-2.jar");
+
+        Files.delete(first);
+        contentStore.remove("g/app/1/app-1.jar");
+        assertEquals(1, countObjects());
+
+        Files.delete(second);
+        contentStore.remove("g/app/2/app-2.jar");
+        assertEquals(0, countObjects());
+    }
+
+    @Test
+    public void persistsIndex() throws Exception {
+        Path target = overlay.resolve("g/app/1/app-1.jar");
+        ContentStore contentStore = new ContentStore(store, overlay);
+        contentStore.install(source, target, "g/app/1/app-1.jar");
+        contentStore.save();
+        assertTrue(Files.isRegularFile(overlay.resolve(ContentStore.INDEX_FILE)));
+
+        Files.delete(target);
+        new ContentStore(store, overlay).remove("g/app/1/app-1.jar");
+        assertEquals(0, countObjects());
+    }
+
+    @Test
+    public void failedInstallLeavesTargetIntact() throws Exception {
+        Path target = Files.createDirectories(overlay.resolve("g/app/1")).resolve("app-1.jar");
+        Files.write(target, "previous".getBytes(StandardCharsets.UTF_8));
+        ContentStore contentStore = new ContentStore(temp.newFile("broken").toPath(), overlay);
+        // store root is not a directory
+        assertThrows(IOException.class, () -> contentStore.install(source, target, "g/app/1/app-1.jar"));
+        assertEquals("previous", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        try (Stream<Path> files = Files.list(target.getParent())) {
+            assertEquals(1, files.count());
+        }
+        assertFalse(Files.exists(overlay.resolve(ContentStore.INDEX_FILE)));
+    }
+
+    private long countObjects() throws Exception {
+        try (Stream<Path> files = Files.walk(store)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+}
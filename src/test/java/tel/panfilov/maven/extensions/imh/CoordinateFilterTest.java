@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoordinateFilterTest {
+
+    @Test
+    public void acceptsAllAddedCoordinates() {
+        List<String[]> coordinates = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            coordinates.add(new String[]{"org.example" + (i % 5), "module-" + i});
+        }
+        CoordinateFilter filter = CoordinateFilter.of(coordinates);
+        for (String[] coordinate : coordinates) {
+            assertTrue(filter.mightContain(coordinate[0], coordinate[1]));
+        }
+    }
+
+    @Test
+    public void rejectsMostForeignCoordinates() {
+        List<String[]> coordinates = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            coordinates.add(new String[]{"org.example", "module-" + i});
+        }
+        CoordinateFilter filter = CoordinateFilter.of(coordinates);
+        int accepted = 0;
+        int probes = 10000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("org.thirdparty" + (i % 13), "library-" + i)) {
+                accepted++;
+            }
+        }
+        // 16 bits per entry and 3 hashes give ~0.3% false positive rate
+        assertTrue("false positives: " + accepted, accepted < probes / 50);
+    }
+
+    @Test
+    public void emptyFilterRejectsEverything() {
+        CoordinateFilter filter = CoordinateFilter.of(Collections.emptyList());
+        assertFalse(filter.mightContain("org.example", "module"));
+        assertFalse(filter.mightContain(null, null));
+    }
+
+    @Test
+    public void distinguishesGroupIds() {
+        CoordinateFilter filter = CoordinateFilter.of(Collections.singletonList(new String[]{"org.example", "module"}));
+        assertTrue(filter.mightContain("org.example", "module"));
+        assertFalse(filter.mightContain("com.example", "module"));
+    }
+
+}
@@ -0,0 +1,139 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link CoordinateIndex} with map keyed by {@code groupId:artifactId:version} strings,
+ * the way reactor modules used to be looked up. Half of lookups miss, as most of artifacts
+ * resolved during the build are third-party ones.
+ * <p>
+ * Run with {@code mvn test-compile} and {@code java -cp <test classpath> tel.panfilov.maven.extensions.imh.CoordinateIndexBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoordinateIndexBenchmark {
+
+    @Param({"50", "1000"})
+    private int modules;
+
+    private String[][] lookups;
+
+    private String[][] replacements;
+
+    private CoordinateIndex<String[]> index;
+
+    private Map<String, String[]> hashMap;
+
+    private Map<String, String[]> concurrentMap;
+
+    private int position;
+
+    @Setup
+    public void setup() {
+        index = new CoordinateIndex<>();
+        hashMap = new HashMap<>();
+        concurrentMap = new ConcurrentHashMap<>();
+        replacements = new String[modules][];
+        for (int i = 0; i < modules; i++) {
+            String[] gav = {"org.example.group" + (i % 10), "module-" + i, "1.0.0-SNAPSHOT"};
+            index.put(gav, v -> v);
+            hashMap.put(getKey(gav), gav);
+            concurrentMap.put(getKey(gav), gav);
+            replacements[i] = gav.clone();
+        }
+        lookups = new String[1024][];
+        for (int i = 0; i < lookups.length; i++) {
+            if (i % 2 == 0) {
+                // fresh strings, as coordinates of resolved artifacts are not interned
+                lookups[i] = new String[]{new String("org.example.group" + (i % modules % 10)), new String("module-" + i % modules), new String("1.0.0-SNAPSHOT")};
+            } else {
+                lookups[i] = new String[]{"org.thirdparty", "library-" + i, "2.1"};
+            }
+        }
+    }
+
+    private static String getKey(String[] gav) {
+        return gav[0] + ':' + gav[1] + ':' + gav[2];
+    }
+
+    private String[] next() {
+        position = (position + 1) & (lookups.length - 1);
+        return lookups[position];
+    }
+
+    @Benchmark
+    public Object coordinateIndexGet() {
+        String[] gav = next();
+        return index.get(gav[0], gav[1], gav[2]);
+    }
+
+    @Benchmark
+    public Object hashMapGet() {
+        return hashMap.get(getKey(next()));
+    }
+
+    @Benchmark
+    public Object concurrentHashMapGet() {
+        return concurrentMap.get(getKey(next()));
+    }
+
+    @Benchmark
+    public Object coordinateIndexReplace() {
+        position = (position + 1) % modules;
+        return index.put(replacements[position], v -> v);
+    }
+
+    @Benchmark
+    public Object concurrentHashMapReplace() {
+        position = (position + 1) % modules;
+        String[] gav = replacements[position];
+        return concurrentMap.put(getKey(gav), gav);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CoordinateIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CoordinateIndexTest {
+
+    @Test
+    public void findsValuesByCoordinates() {
+        CoordinateIndex<String[]> index = new CoordinateIndex<>();
+        String[] first = {"g", "a", "1.0"};
+        String[] second = {"g", "b", "1.0"};
+        index.putAll(Arrays.asList(first, second), gav -> gav);
+
+        assertEquals(2, index.size());
+        assertSame(first, index.get("g", "a", "1.0"));
+        assertSame(second, index.get("g", "b", "1.0"));
+        assertNull(index.get("g", "a", "2.0"));
+        assertNull(index.get("h", "a", "1.0"));
+        assertFalse(index.contains("g", "c", "1.0"));
+    }
+
+    @Test
+    public void replacesValuesWithSameCoordinates() {
+        CoordinateIndex<String[]> index = new CoordinateIndex<>();
+        String[] first = {"g", "a", "1.0", "first"};
+        String[] second = {"g", "a", "1.0", "second"};
+
+        assertNull(index.put(first, gav -> gav));
+        assertSame(first, index.put(second, gav -> gav));
+        assertEquals(1, index.size());
+        assertSame(second, index.get("g", "a", "1.0"));
+
+        String[] third = {"g", "a", "1.0", "third"};
+        assertSame(second, index.putIfAbsent(third, gav -> gav));
+        assertSame(second, index.get("g", "a", "1.0"));
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() {
+        CoordinateIndex<String[]> index = new CoordinateIndex<>();
+        List<String[]> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String[] gav = {"g" + (i % 7), "a" + i, "1." + (i % 3)};
+            values.add(gav);
+            index.put(gav, v -> v);
+        }
+
+        assertEquals(1000, index.size());
+        for (String[] gav : values) {
+            assertSame(gav, index.get(gav[0], gav[1], gav[2]));
+        }
+        assertEquals(1000, index.values().size());
+    }
+
+    @Test
+    public void supportsNullCoordinates() {
+        CoordinateIndex<String[]> index = new CoordinateIndex<>();
+        String[] gav = {null, "a", null};
+        index.put(gav, v -> v);
+
+        assertSame(gav, index.get(null, "a", null));
+        assertNull(index.get("", "a", ""));
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        CoordinateIndex<String[]> index = new CoordinateIndex<>();
+        String[] first = {"g", "a", "1.0"};
+        index.put(first, v -> v);
+
+        CoordinateIndex<String[]> copy = index.copy();
+        String[] replaced = {"g", "a", "1.0"};
+        copy.put(replaced, v -> v);
+        copy.put(new String[]{"g", "b", "1.0"}, v -> v);
+
+        assertSame(first, index.get("g", "a", "1.0"));
+        assertEquals(1, index.size());
+        assertSame(replaced, copy.get("g", "a", "1.0"));
+        assertEquals(2, copy.size());
+        assertTrue(copy.contains("g", "b", "1.0"));
+        assertEquals(Collections.singletonList(first), index.values());
+    }
+
+}
@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DigestManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path classes;
+
+    @Before
+    public void setUp() throws IOException {
+        classes = folder.newFolder("classes").toPath();
+        write("a/A.class", "first");
+        write("b/B.class", "second");
+    }
+
+    @Test
+    public void unchangedDirectoryHasNoChanges() throws IOException {
+        DigestManifest manifest = DigestManifest.create(classes);
+        assertNull(manifest.findChanged(classes));
+        assertFalse(manifest.isRefreshed());
+    }
+
+    @Test
+    public void touchedFilesAreHashedAndRefreshed() throws IOException {
+        DigestManifest manifest = DigestManifest.create(classes);
+        touch("a/A.class");
+        assertNull(manifest.findChanged(classes));
+        assertTrue(manifest.isRefreshed());
+    }
+
+    @Test
+    public void rewrittenFileOfTheSameSizeIsDetected() throws IOException {
+        DigestManifest manifest = DigestManifest.create(classes);
+        write("b/B.class", "SECOND");
+        touch("b/B.class");
+        assertEquals("b/B.class", manifest.findChanged(classes));
+    }
+
+    @Test
+    public void addedAndRemovedFilesAreDetected() throws IOException {
+        DigestManifest manifest = DigestManifest.create(classes);
+        write("c/C.class", "third");
+        assertEquals("c/C.class", manifest.findChanged(classes));
+        Files.delete(classes.resolve("c/C.class"));
+        Files.delete(classes.resolve("a/A.class"));
+        assertEquals("a/A.class", manifest.findChanged(classes));
+    }
+
+    @Test
+    public void manifestSurvivesRoundTrip() throws IOException {
+        write("with space/D.class", "fourth");
+        File file = new File(folder.getRoot(), "app.jar" + DigestManifest.EXTENSION);
+        DigestManifest.create(classes).write(file);
+        DigestManifest manifest = DigestManifest.read(file);
+        assertNull(manifest.findChanged(classes));
+        write("with space/D.class", "FOURTH");
+        touch("with space/D.class");
+        assertEquals("with space/D.class", DigestManifest.read(file).findChanged(classes));
+    }
+
+    @Test
+    public void malformedManifestIsIgnored() throws IOException {
+        File file = folder.newFile("broken" + DigestManifest.EXTENSION);
+        Files.write(file.toPath(), "digest size".getBytes(StandardCharsets.UTF_8));
+        assertNull(DigestManifest.read(file));
+        assertNull(DigestManifest.read(new File(folder.getRoot(), "missing" + DigestManifest.EXTENSION)));
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = classes.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void touch(String path) throws IOException {
+        Path file = classes.resolve(path);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10_000));
+    }
+
+}
@@ -0,0 +1,221 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.internal.impl.SimpleLocalRepositoryManagerFactory;
+import org.eclipse.aether.metadata.DefaultMetadata;
+import org.eclipse.aether.metadata.Metadata;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IMHRepositoryManagerTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private IMHRepositoryManager manager;
+
+    private Path overlay;
+
+    private File source;
+
+    @Before
+    public void setUp() throws Exception {
+        File local = temp.newFolder("local");
+        overlay = temp.newFolder("overlay").toPath();
+        manager = new IMHRepositoryManager();
+        Field logger = IMHRepositoryManager.class.getDeclaredField("logger");
+        logger.setAccessible(true);
+        logger.set(manager, new ConsoleLogger(Logger.LEVEL_DISABLED, "imh"));
+        manager.setRepositoryManagers(newManager(local), newManager(overlay.toFile()));
+        manager.setRootProject(ReactorSnapshot.of(Collections.singletonList(module("app", "1"))));
+        source = temp.newFile("app-1.jar");
+        Files.write(source.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        manager.reset(false);
+    }
+
+    @Test
+    public void fallsBackToHardLinkWhenContentStoreFails() throws Exception {
+        manager.setContentStore(new ContentStore(temp.newFile("broken").toPath(), overlay));
+        manager.setLinkEnabled(true);
+        File target = overlay.resolve("g/app/1/app-1.jar").toFile();
+        install(artifact("jar"), target);
+
+        assertTrue(Files.isSameFile(source.toPath(), target.toPath()));
+        assertEquals(1, countFiles(target.getParentFile().toPath()));
+    }
+
+    @Test
+    public void fallsBackToCopyWhenContentStoreFails() throws Exception {
+        manager.setContentStore(new ContentStore(temp.newFile("broken").toPath(), overlay));
+        File target = overlay.resolve("g/app/1/app-1.jar").toFile();
+        install(artifact("jar"), target);
+
+        assertFalse(Files.isSameFile(source.toPath(), target.toPath()));
+        assertEquals("content", read(target));
+        assertEquals(1, countFiles(target.getParentFile().toPath()));
+    }
+
+    @Test
+    public void installsViaContentStore() throws Exception {
+        Path store = temp.newFolder("store").toPath();
+        manager.setContentStore(new ContentStore(store, overlay));
+        File target = overlay.resolve("g/app/1/app-1.jar").toFile();
+        install(artifact("jar"), target);
+
+        assertEquals("content", read(target));
+        assertFalse(Files.isSameFile(source.toPath(), target.toPath()));
+        assertEquals(1, countFiles(store));
+        assertEquals(2, Files.getAttribute(target.toPath(), "unix:nlink"));
+    }
+
+    @Test
+    public void collectsGarbageOfNonReactorCoordinatesOnly() throws Exception {
+        OverlayCollectorTest.coordinate(overlay, "app", "1", 1_000_000L);
+        OverlayCollectorTest.coordinate(overlay, "app", "0.9", 2_000_000L);
+        OverlayCollectorTest.coordinate(overlay, "lib", "1", 3_000_000L);
+        manager.setCollectGarbage(true);
+        manager.sessionEnded();
+
+        assertTrue(Files.exists(overlay.resolve("g/app/1/app-1.jar")));
+        assertFalse(Files.exists(overlay.resolve("g/app/0.9")));
+        assertFalse(Files.exists(overlay.resolve("g/lib")));
+    }
+
+    @Test
+    public void evictsCoordinatesOverSizeLimit() throws Exception {
+        OverlayCollectorTest.coordinate(overlay, "app", "1", 1_000_000L);
+        OverlayCollectorTest.coordinate(overlay, "old", "1", 2_000_000L);
+        OverlayCollectorTest.coordinate(overlay, "recent", "1", 3_000_000L);
+        manager.setMaxSize(200);
+        manager.sessionEnded();
+
+        assertTrue(Files.exists(overlay.resolve("g/app/1/app-1.jar")));
+        assertFalse(Files.exists(overlay.resolve("g/old")));
+        assertTrue(Files.exists(overlay.resolve("g/recent/1/recent-1.jar")));
+    }
+
+    @Test
+    public void failedStagedWriteLeavesNoPartialFile() throws Exception {
+        File published = Files.createDirectories(overlay.resolve("g/app/1")).resolve("app-1.pom").toFile();
+        Files.write(published.toPath(), "<project/>".getBytes(StandardCharsets.UTF_8));
+        File staged = new File(published.getPath() + IMHRepositoryManager.STAGING_SUFFIX);
+        Artifact pom = artifact("pom");
+
+        manager.artifactInstalling(pom, staged);
+        Files.write(staged.toPath(), "<proj".getBytes(StandardCharsets.UTF_8));
+        manager.artifactInstalled(pom, staged, new IOException("disk full"));
+
+        assertFalse(staged.exists());
+        assertEquals("<project/>", read(published));
+    }
+
+    @Test
+    public void publishesStagedWriteOnceCompleted() throws Exception {
+        File published = overlay.resolve("g/app/1/app-1.pom").toFile();
+        File staged = new File(published.getPath() + IMHRepositoryManager.STAGING_SUFFIX);
+        Artifact pom = artifact("pom");
+
+        manager.artifactInstalling(pom, staged);
+        Files.createDirectories(staged.getParentFile().toPath());
+        Files.write(staged.toPath(), "<project/>".getBytes(StandardCharsets.UTF_8));
+        assertFalse(published.exists());
+        manager.artifactInstalled(pom, staged, null);
+
+        assertFalse(staged.exists());
+        assertEquals("<project/>", read(published));
+    }
+
+    @Test
+    public void failedStagedMetadataLeavesPublishedIntact() throws Exception {
+        File published = Files.createDirectories(overlay.resolve("g/app")).resolve("maven-metadata-local.xml").toFile();
+        Files.write(published.toPath(), "<metadata/>".getBytes(StandardCharsets.UTF_8));
+        File staged = new File(published.getPath() + IMHRepositoryManager.STAGING_SUFFIX);
+        Metadata metadata = new DefaultMetadata("g", "app", "1", "maven-metadata.xml", Metadata.Nature.RELEASE);
+
+        manager.metadataInstalling(metadata, staged);
+        // installer merges into the copy of published metadata
+        assertEquals("<metadata/>", read(staged));
+        Files.write(staged.toPath(), "<meta".getBytes(StandardCharsets.UTF_8));
+        manager.metadataInstalled(metadata, staged, new IOException("disk full"));
+
+        assertFalse(staged.exists());
+        assertEquals("<metadata/>", read(published));
+    }
+
+    protected void install(Artifact artifact, File target) {
+        manager.artifactInstalling(artifact, target);
+        manager.artifactInstalled(artifact, target, null);
+    }
+
+    protected Artifact artifact(String extension) {
+        return new DefaultArtifact("g", "app", extension, "1").setFile(source);
+    }
+
+    protected static ReactorModule module(String artifactId, String version) {
+        return new ReactorModule("g", artifactId, version, "jar", new File(artifactId, "pom.xml"), "target",
+                "target/classes", "target/test-classes", artifactId + "-" + version, Collections.emptyMap());
+    }
+
+    protected static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    protected static long countFiles(Path directory) throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static LocalRepositoryManager newManager(File basedir) throws Exception {
+        return new SimpleLocalRepositoryManagerFactory()
+                .newInstance(new DefaultRepositorySystemSession(), new LocalRepository(basedir));
+    }
+
+}
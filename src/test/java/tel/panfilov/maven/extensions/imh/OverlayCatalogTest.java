@@ -0,0 +1,131 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class OverlayCatalogTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        Path overlay = temp.newFolder("overlay").toPath();
+        OverlayCatalog catalog = new OverlayCatalog(overlay);
+        for (int i = 0; i < 200; i++) {
+            add(catalog, overlay, "g/a" + i + "/1.0/a" + i + "-1.0.jar", "content" + i);
+        }
+        catalog.save();
+        catalog.close();
+
+        OverlayCatalog loaded = new OverlayCatalog(overlay);
+        for (int i = 0; i < 200; i++) {
+            String path = "g/a" + i + "/1.0/a" + i + "-1.0.jar";
+            OverlayCatalog.Entry entry = loaded.find(path);
+            assertNotNull(path, entry);
+            assertEquals(("content" + i).length(), entry.getSize());
+        }
+        assertNull(loaded.find("g/a0/1.0/a0-1.0.pom"));
+        assertNull(loaded.find("g/b/1.0/b-1.0.jar"));
+        loaded.close();
+    }
+
+    @Test
+    public void mergesChangesOnSave() throws Exception {
+        Path overlay = temp.newFolder("overlay").toPath();
+        OverlayCatalog catalog = new OverlayCatalog(overlay);
+        add(catalog, overlay, "g/a/1.0/a-1.0.jar", "a");
+        add(catalog, overlay, "g/b/1.0/b-1.0.jar", "b");
+        catalog.save();
+
+        // saving again replaces the file mapped by the same instance
+        add(catalog, overlay, "g/c/1.0/c-1.0.jar", "c");
+        catalog.remove("g/a/1.0/a-1.0.jar");
+        catalog.save();
+        assertNull(catalog.find("g/a/1.0/a-1.0.jar"));
+        assertNotNull(catalog.find("g/c/1.0/c-1.0.jar"));
+        catalog.close();
+
+        OverlayCatalog loaded = new OverlayCatalog(overlay);
+        assertNull(loaded.find("g/a/1.0/a-1.0.jar"));
+        assertNotNull(loaded.find("g/b/1.0/b-1.0.jar"));
+        assertNotNull(loaded.find("g/c/1.0/c-1.0.jar"));
+        loaded.close();
+    }
+
+    @Test
+    public void dropsEntriesOfRemovedFiles() throws Exception {
+        Path overlay = temp.newFolder("overlay").toPath();
+        OverlayCatalog catalog = new OverlayCatalog(overlay);
+        Path file = add(catalog, overlay, "g/a/1.0/a-1.0.jar", "a");
+        catalog.save();
+        catalog.close();
+
+        OverlayCatalog loaded = new OverlayCatalog(overlay);
+        Files.delete(file);
+        assertNull(loaded.find("g/a/1.0/a-1.0.jar"));
+        loaded.close();
+    }
+
+    @Test
+    public void dropsEntriesOfChangedFiles() throws Exception {
+        Path overlay = temp.newFolder("overlay").toPath();
+        OverlayCatalog catalog = new OverlayCatalog(overlay);
+        Path file = add(catalog, overlay, "g/a/1.0/a-1.0.jar", "a");
+        assertNotNull(catalog.find("g/a/1.0/a-1.0.jar"));
+
+        Files.write(file, "changed".getBytes(StandardCharsets.UTF_8));
+        assertNull(catalog.find("g/a/1.0/a-1.0.jar"));
+        catalog.close();
+    }
+
+    @Test
+    public void ignoresCorruptedCatalog() throws Exception {
+        Path overlay = temp.newFolder("overlay").toPath();
+        Files.write(overlay.resolve(OverlayCatalog.CATALOG_FILE), new byte[]{1, 2, 3});
+        OverlayCatalog catalog = new OverlayCatalog(overlay);
+        assertNull(catalog.find("g/a/1.0/a-1.0.jar"));
+        catalog.close();
+    }
+
+    private static Path add(OverlayCatalog catalog, Path overlay, String path, String content) throws Exception {
+        Path file = overlay.resolve(path.replace('/', File.separatorChar));
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000L));
+        catalog.add(path, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        return file;
+    }
+
+}
@@ -0,0 +1,139 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OverlayCollectorTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private Path overlay;
+
+    private OverlayLocks locks;
+
+    private OverlayCollector collector;
+
+    @Before
+    public void setUp() throws Exception {
+        overlay = temp.newFolder("overlay").toPath();
+        locks = new OverlayLocks(overlay);
+        collector = new OverlayCollector(overlay, locks);
+    }
+
+    @After
+    public void tearDown() {
+        locks.close();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedCoordinatesTillSizeFits() throws Exception {
+        coordinate(overlay, "app", "1", 1_000_000L);
+        coordinate(overlay, "old", "1", 2_000_000L);
+        coordinate(overlay, "recent", "1", 3_000_000L);
+        List<String> evicted = new ArrayList<>();
+
+        long freed = collector.collect(c -> "app".equals(c.getArtifactId()), 200, (c, path) -> evicted.add(path));
+
+        assertEquals(100, freed);
+        assertEquals(Arrays.asList("g/old/1/old-1.jar", "g/old/1/old-1.pom"), sorted(evicted));
+        assertFalse(Files.exists(overlay.resolve("g/old")));
+        assertTrue(Files.exists(overlay.resolve("g/app/1/app-1.jar")));
+        assertTrue(Files.exists(overlay.resolve("g/recent/1/recent-1.jar")));
+    }
+
+    @Test
+    public void recordedAccessProtectsCoordinate() throws Exception {
+        coordinate(overlay, "old", "1", 1_000_000L);
+        coordinate(overlay, "recent", "1", 2_000_000L);
+        collector.accessed("g", "old", "1");
+        collector.saveAccessTimes();
+
+        new OverlayCollector(overlay, locks).collect(c -> false, 100, (c, path) -> {
+        });
+
+        assertTrue(Files.exists(overlay.resolve("g/old/1")));
+        assertFalse(Files.exists(overlay.resolve("g/recent")));
+    }
+
+    @Test
+    public void keepsCoordinatesWithinSizeLimit() throws Exception {
+        coordinate(overlay, "old", "1", 1_000_000L);
+        coordinate(overlay, "recent", "1", 2_000_000L);
+
+        assertEquals(0, collector.collect(c -> false, 200, (c, path) -> {
+        }));
+        assertTrue(Files.exists(overlay.resolve("g/old/1")));
+        assertTrue(Files.exists(overlay.resolve("g/recent/1")));
+    }
+
+    @Test
+    public void collectsAllCoordinatesOutsideOfReactor() throws Exception {
+        coordinate(overlay, "app", "1", 1_000_000L);
+        coordinate(overlay, "app", "0.9", 2_000_000L);
+        coordinate(overlay, "lib", "1", 3_000_000L);
+
+        long freed = collector.collect(c -> "app".equals(c.getArtifactId()) && "1".equals(c.getVersion()), -1,
+                (c, path) -> {
+                });
+
+        assertEquals(200, freed);
+        assertTrue(Files.exists(overlay.resolve("g/app/1/app-1.pom")));
+        assertFalse(Files.exists(overlay.resolve("g/app/0.9")));
+        assertFalse(Files.exists(overlay.resolve("g/lib")));
+    }
+
+    /**
+     * Creates version directory holding pom and jar, 100 bytes in total
+     */
+    static void coordinate(Path overlay, String artifactId, String version, long modified) throws Exception {
+        Path dir = Files.createDirectories(overlay.resolve("g").resolve(artifactId).resolve(version));
+        String name = artifactId + "-" + version;
+        Path pom = Files.write(dir.resolve(name + ".pom"), new byte[40]);
+        Path jar = Files.write(dir.resolve(name + ".jar"), new byte[60]);
+        Files.setLastModifiedTime(pom, FileTime.fromMillis(modified));
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(modified));
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> result = new ArrayList<>(values);
+        result.sort(null);
+        return result;
+    }
+
+}
@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OverlayLocksTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void serializesWritesOfTheSameCoordinate() throws Exception {
+        OverlayLocks locks = new OverlayLocks(temp.getRoot().toPath());
+        AtomicBoolean acquired = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        locks.lock("g", "app", "1");
+        // reentrant for the owning thread
+        locks.lock("g", "app", "1");
+        Thread thread = new Thread(() -> {
+            locks.lock("g", "app", "1");
+            acquired.set(true);
+            locks.unlock("g", "app", "1");
+            done.countDown();
+        });
+        thread.start();
+        try {
+            locks.unlock("g", "app", "1");
+            assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+            assertFalse(acquired.get());
+        } finally {
+            locks.unlock("g", "app", "1");
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(acquired.get());
+        locks.close();
+    }
+
+    @Test
+    public void reopensLockFilesAfterClose() throws Exception {
+        OverlayLocks locks = new OverlayLocks(temp.getRoot().toPath());
+        locks.lock("g", "app", "1");
+        locks.unlock("g", "app", "1");
+        locks.close();
+        locks.lock("g", "app", "1");
+        locks.unlock("g", "app", "1");
+        locks.close();
+        assertTrue(temp.getRoot().toPath().resolve(OverlayLocks.LOCKS_DIRECTORY).toFile().isDirectory());
+    }
+
+}
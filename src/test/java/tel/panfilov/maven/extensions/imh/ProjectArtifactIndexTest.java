@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ProjectArtifactIndexTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void keepsAttachedArtifactsOfOtherArtifactIds() throws Exception {
+        MavenProject project = project();
+        File client = temp.newFile("app-client.jar");
+        project.addAttachedArtifact(artifact("app-client", "", client));
+
+        ProjectArtifactIndex index = new ProjectArtifactIndex(project);
+        assertEquals(client, index.get(new DefaultArtifact("g:app-client:jar:1")).getFile());
+        assertEquals(project.getArtifact().getFile(), index.get(new DefaultArtifact("g:app:jar:1")).getFile());
+        assertNull(index.get(new DefaultArtifact("g:app-client:jar:2")));
+        assertNull(index.get(new DefaultArtifact("g:app-server:jar:1")));
+    }
+
+    @Test
+    public void skipsArtifactsWhichFilesAreMissing() throws Exception {
+        MavenProject project = project();
+        File missing = new File(temp.getRoot(), "app-tests-missing.jar");
+        File tests = temp.newFile("app-tests.jar");
+        project.addAttachedArtifact(artifact("app", "tests", missing));
+        project.addAttachedArtifact(artifact("app", "tests", tests));
+
+        ProjectArtifactIndex index = new ProjectArtifactIndex(project);
+        Artifact found = index.get(new DefaultArtifact("g:app:jar:tests:1"));
+        assertEquals(tests, found.getFile());
+
+        tests.delete();
+        assertNull(index.get(new DefaultArtifact("g:app:jar:tests:1")));
+    }
+
+    private MavenProject project() throws Exception {
+        MavenProject project = new MavenProject();
+        project.setGroupId("g");
+        project.setArtifactId("app");
+        project.setVersion("1");
+        project.setArtifact(artifact("app", null, temp.newFile("app.jar")));
+        return project;
+    }
+
+    private static org.apache.maven.artifact.Artifact artifact(String artifactId, String classifier, File file) {
+        org.apache.maven.artifact.Artifact artifact = new org.apache.maven.artifact.DefaultArtifact("g", artifactId,
+                "1", null, "jar", classifier, new DefaultArtifactHandler("jar"));
+        artifact.setFile(file);
+        return artifact;
+    }
+
+}
@@ -0,0 +1,89 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RawReactorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void subtreesWithLocalParentsAreSelfContained() throws IOException {
+        File root = reactor("");
+        RawReactor reactor = RawReactor.read(root);
+        assertTrue(reactor.isSelfContained(reactor.getSubtree(new File(folder.getRoot(), "a/pom.xml"))));
+        assertTrue(reactor.isSelfContained(reactor.getSubtree(new File(folder.getRoot(), "b/pom.xml"))));
+    }
+
+    @Test
+    public void importOfAnotherSubtreeIsDetected() throws IOException {
+        File root = reactor("<dependencyManagement><dependencies><dependency><groupId>g</groupId>"
+                + "<artifactId>a-bom</artifactId><version>1</version><type>pom</type><scope>import</scope>"
+                + "</dependency></dependencies></dependencyManagement>");
+        RawReactor reactor = RawReactor.read(root);
+        assertTrue(reactor.isSelfContained(reactor.getSubtree(new File(folder.getRoot(), "a/pom.xml"))));
+        assertFalse(reactor.isSelfContained(reactor.getSubtree(new File(folder.getRoot(), "b/pom.xml"))));
+        PomHeader b = reactor.getModule(new File(folder.getRoot(), "b/pom.xml"));
+        assertEquals(1, b.getImports().size());
+        assertEquals("a-bom", b.getImports().get(0)[1]);
+    }
+
+    @Test
+    public void parentOutsideOfRelativePathIsDetected() throws IOException {
+        reactor("");
+        write("b/pom.xml", "<project><parent><groupId>g</groupId><artifactId>a-bom</artifactId><version>1</version>"
+                + "</parent><artifactId>b</artifactId></project>");
+        RawReactor reactor = RawReactor.read(new File(folder.getRoot(), "pom.xml"));
+        assertFalse(reactor.isSelfContained(reactor.getSubtree(new File(folder.getRoot(), "b/pom.xml"))));
+    }
+
+    private File reactor(String management) throws IOException {
+        write("a/bom/pom.xml", "<project><parent><groupId>g</groupId><artifactId>a</artifactId><version>1</version>"
+                + "</parent><artifactId>a-bom</artifactId><packaging>pom</packaging></project>");
+        write("a/pom.xml", "<project><parent><groupId>g</groupId><artifactId>root</artifactId><version>1</version>"
+                + "</parent><artifactId>a</artifactId><packaging>pom</packaging><modules><module>bom</module></modules></project>");
+        write("b/pom.xml", "<project><parent><groupId>g</groupId><artifactId>root</artifactId><version>1</version>"
+                + "</parent><artifactId>b</artifactId>" + management + "</project>");
+        return write("pom.xml", "<project><groupId>g</groupId><artifactId>root</artifactId><version>1</version>"
+                + "<packaging>pom</packaging><modules><module>a</module><module>b</module></modules></project>");
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+}
@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReactorGraphTest {
+
+    private final Set<String> stale = new HashSet<>();
+
+    private final Map<String, Integer> checks = new HashMap<>();
+
+    @Test
+    public void staleStatePropagatesDownstream() {
+        ReactorGraph graph = graph(module("common"), module("client", "common"), module("app", "client"),
+                module("other"));
+        stale.add("common");
+        assertTrue(graph.isStale(key("app")));
+        assertTrue(graph.isStale(key("client")));
+        assertFalse(graph.isSelfStale(key("app")));
+        assertFalse(graph.isStale(key("other")));
+        assertEquals(Arrays.asList("common", "client", "app"), artifactIds(graph.getRebuildSet()));
+    }
+
+    @Test
+    public void ownStateIsCheckedOnce() {
+        ReactorGraph graph = graph(module("common"), module("client", "common"), module("app", "client", "common"));
+        assertFalse(graph.isStale(key("app")));
+        assertFalse(graph.isStale(key("client")));
+        assertFalse(graph.isStale(key("common")));
+        assertEquals(3, checks.size());
+        checks.values().forEach(count -> assertEquals(1, count.intValue()));
+    }
+
+    @Test
+    public void invalidationDropsStateOfDownstreamModulesOnly() {
+        ReactorGraph graph = graph(module("common"), module("client", "common"), module("app", "client"),
+                module("other"));
+        stale.add("client");
+        assertTrue(graph.isStale(key("app")));
+        assertFalse(graph.isStale(key("other")));
+        stale.remove("client");
+        graph.invalidate(key("client"));
+        assertFalse(graph.isStale(key("app")));
+        assertFalse(graph.isStale(key("other")));
+        assertEquals(1, checks.get("common").intValue());
+        assertEquals(1, checks.get("other").intValue());
+        assertEquals(2, checks.get("client").intValue());
+        assertEquals(2, checks.get("app").intValue());
+        assertTrue(graph.getRebuildSet().isEmpty());
+    }
+
+    @Test
+    public void cyclesDoNotPreventEvaluation() {
+        ReactorGraph graph = graph(module("first", "second"), module("second", "first"), module("app", "second"));
+        stale.add("first");
+        assertTrue(graph.isStale(key("first")));
+        assertTrue(graph.isStale(key("app")));
+        assertEquals(3, graph.getRebuildSet().size());
+    }
+
+    @Test
+    public void rebuildRetainsOwnStateAndAddsEdges() {
+        ReactorModule app = module("app", "client");
+        ReactorGraph graph = graph(app);
+        assertFalse(graph.isStale(key("app")));
+        stale.add("client");
+        ReactorGraph rebuilt = graph.rebuild(Arrays.asList(app, module("client")));
+        assertTrue(rebuilt.isStale(key("app")));
+        assertEquals(1, checks.get("app").intValue());
+    }
+
+    private ReactorGraph graph(ReactorModule... modules) {
+        return new ReactorGraph(Arrays.asList(modules), module -> {
+            checks.merge(module.getArtifactId(), 1, Integer::sum);
+            return stale.contains(module.getArtifactId());
+        });
+    }
+
+    private static ReactorModule module(String artifactId, String... dependencies) {
+        List<String> keys = new ArrayList<>();
+        for (String dependency : dependencies) {
+            keys.add(key(dependency));
+        }
+        File directory = new File(artifactId, "target");
+        return new ReactorModule("g", artifactId, "1", "jar", new File(artifactId, "pom.xml"), directory.getPath(),
+                new File(directory, "classes").getPath(), new File(directory, "test-classes").getPath(),
+                artifactId + "-1", Collections.emptyMap(), keys);
+    }
+
+    private static String key(String artifactId) {
+        return ReactorModule.getKey("g", artifactId, "1");
+    }
+
+    private static List<String> artifactIds(List<ReactorModule> modules) {
+        return modules.stream().map(ReactorModule::getArtifactId).collect(Collectors.toList());
+    }
+
+}
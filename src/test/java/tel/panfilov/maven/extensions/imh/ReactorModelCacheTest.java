@@ -0,0 +1,117 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.ModelCache;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ReactorModelCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sharesRawModelsOnly() {
+        ReactorModelCache cache = new ReactorModelCache();
+        Model model = new Model();
+        Object imported = new Object();
+        cache.put("g", "a", "1", ReactorModelCache.RAW_TAG, model);
+        cache.put("g", "a", "1", "import", imported);
+        assertSame(model, cache.get("g", "a", "1", ReactorModelCache.RAW_TAG));
+        assertNull(cache.get("g", "a", "1", "import"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void wrappedCacheKeepsOtherEntriesInRequestCache() {
+        ReactorModelCache cache = new ReactorModelCache();
+        MapModelCache first = new MapModelCache();
+        ModelCache wrapped = cache.wrap(first);
+        Object imported = new Object();
+        Model model = new Model();
+        wrapped.put("g", "a", "1", "import", imported);
+        wrapped.put("g", "a", "1", ReactorModelCache.RAW_TAG, model);
+        assertSame(imported, wrapped.get("g", "a", "1", "import"));
+        assertSame(imported, first.get("g", "a", "1", "import"));
+
+        ModelCache other = cache.wrap(new MapModelCache());
+        assertNull(other.get("g", "a", "1", "import"));
+        assertSame(model, other.get("g", "a", "1", ReactorModelCache.RAW_TAG));
+        assertSame(wrapped, cache.wrap(wrapped));
+    }
+
+    @Test
+    public void dropsModelsOfModifiedPoms() throws IOException {
+        File pom = folder.newFile("pom.xml");
+        Model model = new Model();
+        model.setPomFile(pom);
+        ReactorModelCache cache = new ReactorModelCache();
+        cache.put("g", "a", "1", ReactorModelCache.RAW_TAG, model);
+        assertSame(model, cache.get("g", "a", "1", ReactorModelCache.RAW_TAG));
+        Files.write(pom.toPath(), "<project/>".getBytes(StandardCharsets.UTF_8));
+        assertNull(cache.get("g", "a", "1", ReactorModelCache.RAW_TAG));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedModels() {
+        ReactorModelCache cache = new ReactorModelCache();
+        cache.setMaxSize(2);
+        cache.put("g", "a", "1", ReactorModelCache.RAW_TAG, new Model());
+        cache.put("g", "b", "1", ReactorModelCache.RAW_TAG, new Model());
+        cache.get("g", "a", "1", ReactorModelCache.RAW_TAG);
+        cache.put("g", "c", "1", ReactorModelCache.RAW_TAG, new Model());
+        assertNull(cache.get("g", "b", "1", ReactorModelCache.RAW_TAG));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    static class MapModelCache implements ModelCache {
+
+        private final Map<String, Object> entries = new HashMap<>();
+
+        @Override
+        public void put(String groupId, String artifactId, String version, String tag, Object data) {
+            entries.put(groupId + ':' + artifactId + ':' + version + ':' + tag, data);
+        }
+
+        @Override
+        public Object get(String groupId, String artifactId, String version, String tag) {
+            return entries.get(groupId + ':' + artifactId + ':' + version + ':' + tag);
+        }
+
+    }
+
+}
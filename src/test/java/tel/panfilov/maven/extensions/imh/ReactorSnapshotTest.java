@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.model.Activation;
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.Profile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReactorSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File root;
+
+    private File pom;
+
+    @Before
+    public void setUp() throws Exception {
+        root = temp.newFolder("root");
+        pom = new File(root, "pom.xml");
+        Files.write(pom.toPath(), "<project/>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void fingerprintCoversSettingsProfileContents() {
+        Profile profile = new Profile();
+        profile.setId("ci");
+        profile.addProperty("db.url", "jdbc:h2:mem:a");
+        MavenExecutionRequest request = request(profile);
+        String fingerprint = fingerprint(Collections.emptySet(), request);
+
+        profile.addProperty("db.url", "jdbc:h2:mem:b");
+        assertNotEquals(fingerprint, fingerprint(Collections.emptySet(), request));
+        String changed = fingerprint(Collections.emptySet(), request);
+
+        Activation activation = new Activation();
+        activation.setActiveByDefault(true);
+        profile.setActivation(activation);
+        assertNotEquals(changed, fingerprint(Collections.emptySet(), request));
+    }
+
+    @Test
+    public void fingerprintCoversEnvironmentOfActivations() {
+        Profile profile = new Profile();
+        profile.setId("ci");
+        Activation activation = new Activation();
+        ActivationProperty property = new ActivationProperty();
+        property.setName("env.CI");
+        activation.setProperty(property);
+        profile.setActivation(activation);
+        Set<String> activations = new TreeSet<>();
+        ReactorSnapshot.addActivations(activations, profile, root);
+
+        MavenExecutionRequest request = request();
+        request.getSystemProperties().setProperty("env.CI", "true");
+        String fingerprint = fingerprint(activations, request);
+        assertEquals(fingerprint, fingerprint(activations, request));
+
+        request.getSystemProperties().setProperty("env.CI", "false");
+        assertNotEquals(fingerprint, fingerprint(activations, request));
+        assertEquals(fingerprint(Collections.emptySet(), request), fingerprint(Collections.emptySet(), request()));
+    }
+
+    @Test
+    public void persistsActivationInputs() throws Exception {
+        MavenExecutionRequest request = request();
+        request.getSystemProperties().setProperty("env.CI", "true");
+        Set<String> activations = new TreeSet<>(Collections.singleton("property:env.CI"));
+        ReactorModule module = new ReactorModule("g", "root", "1", "pom", pom, new File(root, "target").getPath(),
+                new File(root, "target/classes").getPath(), new File(root, "target/test-classes").getPath(),
+                "root-1", Collections.emptyMap());
+        ReactorSnapshot snapshot = new ReactorSnapshot(Collections.singletonList(module), activations,
+                fingerprint(activations, request));
+        File file = ReactorSnapshot.getSnapshotFile(pom);
+        snapshot.write(file);
+
+        ReactorSnapshot loaded = ReactorSnapshot.read(file);
+        assertTrue(loaded.isActual(root, request));
+        request.getSystemProperties().setProperty("env.CI", "false");
+        assertFalse(loaded.isActual(root, request));
+    }
+
+    private String fingerprint(Set<String> activations, MavenExecutionRequest request) {
+        return ReactorSnapshot.fingerprint(root, Collections.singletonList(pom), activations, request);
+    }
+
+    private static MavenExecutionRequest request(Profile... profiles) {
+        MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setSystemProperties(new Properties());
+        request.setUserProperties(new Properties());
+        for (Profile profile : profiles) {
+            request.addProfile(profile);
+        }
+        return request;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StalenessIndexTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void detectsFilesRewrittenInPlace() throws Exception {
+        Path classes = temp.newFolder("classes").toPath();
+        Path pkg = Files.createDirectories(classes.resolve("a/b"));
+        Path file = Files.write(pkg.resolve("C.class"), bytes("first"));
+        setModified(file, 1_000_000L);
+        setModified(pkg, 2_000_000L);
+
+        StalenessIndex index = new StalenessIndex(null);
+        StalenessIndex.Entry entry = index.getEntry(classes);
+        assertEquals(1_000_000L, entry.getNewest());
+        assertEquals(1, entry.getFiles());
+
+        Files.write(file, bytes("second"), StandardOpenOption.TRUNCATE_EXISTING);
+        setModified(file, 3_000_000L);
+        setModified(pkg, 2_000_000L);
+
+        assertEquals(1_000_000L, index.getEntry(classes).getNewest());
+        assertEquals(3_000_000L, index.getEntry(classes, true).getNewest());
+    }
+
+    @Test
+    public void reusesEntryOfUnchangedDirectories() throws Exception {
+        Path classes = temp.newFolder("classes").toPath();
+        setModified(Files.write(classes.resolve("A.class"), bytes("a")), 1_000_000L);
+
+        StalenessIndex index = new StalenessIndex(null);
+        StalenessIndex.Entry entry = index.getEntry(classes);
+        assertSame(entry, index.getEntry(classes));
+    }
+
+    @Test
+    public void trustsModificationTimeOfUnchangedDirectories() throws Exception {
+        Path classes = temp.newFolder("classes").toPath();
+        Path pkg = Files.createDirectories(classes.resolve("a/b"));
+        setModified(Files.write(pkg.resolve("A.class"), bytes("a")), 1_000_000L);
+        setModified(Files.write(pkg.resolve("B.class"), bytes("b")), 1_000_000L);
+        setModified(Files.write(classes.resolve("C.class"), bytes("c")), 1_000_000L);
+
+        Set<Path> stated = new HashSet<>();
+        StalenessIndex index = new StalenessIndex(null) {
+            @Override
+            protected BasicFileAttributes readAttributes(Path path) throws IOException {
+                stated.add(path);
+                return super.readAttributes(path);
+            }
+        };
+        assertEquals(3, index.getEntry(classes).getFiles());
+
+        stated.clear();
+        assertEquals(3, index.getEntry(classes).getFiles());
+        Set<Path> expected = new HashSet<>(Arrays.asList(classes, classes.resolve("a"), pkg));
+        assertEquals(expected, stated);
+
+        stated.clear();
+        index.getEntry(classes, true);
+        assertTrue(stated.contains(pkg.resolve("A.class")));
+    }
+
+    @Test
+    public void detectsAddedAndRemovedFiles() throws Exception {
+        Path classes = temp.newFolder("classes").toPath();
+        Path first = Files.write(classes.resolve("A.class"), bytes("a"));
+        setModified(first, 1_000_000L);
+        setModified(classes, 1_000_000L);
+
+        StalenessIndex index = new StalenessIndex(null);
+        assertEquals(1, index.getEntry(classes).getFiles());
+
+        setModified(Files.write(classes.resolve("B.class"), bytes("b")), 5_000_000L);
+        StalenessIndex.Entry entry = index.getEntry(classes);
+        assertEquals(2, entry.getFiles());
+        assertEquals(5_000_000L, entry.getNewest());
+
+        Files.delete(first);
+        // removal is noticed even if directory modification time is restored, when files get verified
+        setModified(classes, 1_000_000L);
+        assertEquals(1, index.getEntry(classes, true).getFiles());
+    }
+
+    @Test
+    public void persistsState() throws Exception {
+        Path classes = temp.newFolder("classes").toPath();
+        Path pkg = Files.createDirectories(classes.resolve("a"));
+        Path file = Files.write(pkg.resolve("A.class"), bytes("a"));
+        setModified(file, 1_000_000L);
+        File indexFile = new File(temp.getRoot(), "imh/staleness.idx");
+
+        StalenessIndex index = new StalenessIndex(indexFile);
+        index.getEntry(classes);
+        index.save();
+
+        StalenessIndex loaded = new StalenessIndex(indexFile);
+        StalenessIndex.Entry entry = loaded.getEntry(classes);
+        assertEquals(1_000_000L, entry.getNewest());
+        assertEquals(1, entry.getFiles());
+
+        Files.write(file, bytes("b"), StandardOpenOption.TRUNCATE_EXISTING);
+        setModified(file, 4_000_000L);
+        assertEquals(4_000_000L, new StalenessIndex(indexFile).getEntry(classes, true).getNewest());
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Path setModified(Path path, long time) throws Exception {
+        return Files.setLastModifiedTime(path, FileTime.fromMillis(time));
+    }
+
+}
@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * Maven inter-module helper
+ * %%
+ * Copyright (C) 2022 Project Contributors
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+package tel.panfilov.maven.extensions.imh;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindQueueTest {
+
+    @Test
+    public void closeCompletesPendingWrites() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(2, ex -> {
+        });
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        queue.submit("a", () -> {
+            started.countDown();
+            await(release);
+            written.add("a1");
+        });
+        queue.submit("a", () -> written.add("a2"));
+        queue.submit("b", () -> written.add("b1"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        Thread closing = new Thread(queue::close);
+        closing.start();
+        release.countDown();
+        closing.join(10000);
+
+        assertEquals(3, written.size());
+        assertTrue(written.indexOf("a1") < written.indexOf("a2"));
+    }
+
+    @Test
+    public void writesSubmittedAfterCloseAreNotLost() {
+        WriteBehindQueue queue = new WriteBehindQueue(1, ex -> {
+        });
+        queue.close();
+        List<String> written = new ArrayList<>();
+        queue.submit("a", () -> written.add("a1"));
+        assertEquals(Collections.singletonList("a1"), written);
+    }
+
+    @Test
+    public void failuresAreReported() {
+        List<Throwable> errors = new ArrayList<>();
+        WriteBehindQueue queue = new WriteBehindQueue(1, errors::add);
+        queue.submit("a", () -> {
+            throw new IllegalStateException("failed");
+        });
+        queue.close();
+        assertEquals(1, errors.size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}